@@ -0,0 +1,88 @@
+package tourGuide.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import tourGuide.helper.InternalTestHelper;
+import tourGuide.json.NearbyAttractionsWriter;
+import tourGuide.location.LocationProvider;
+import tourGuide.location.SimulatedLocationProvider;
+import tourGuide.repository.InMemoryUserRepository;
+import tourGuide.service.RewardsService;
+import tourGuide.service.TourGuideService;
+import tourGuide.user.User;
+
+/**
+ * The whole /getNearbyAttractions path under concurrent callers; read the p0.99 row of the sample time output.
+ * Users are picked at random, so reward points lookups hit RewardCentral until the cache has warmed up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class NearbyAttractionsBenchmark {
+
+	@Param({"1000"})
+	public int userCount;
+
+	@Param({"1"})
+	public long rewardLatencyMillis;
+
+	private TourGuideService tourGuideService;
+	private List<User> users;
+
+	@Setup
+	public void setUp() {
+		LocationProvider locationProvider = new SimulatedLocationProvider(0, 0, TimeUnit.MILLISECONDS);
+		RewardsService rewardsService = new RewardsService(locationProvider, new StubRewardCentral(rewardLatencyMillis));
+		InternalTestHelper.setInternalUserNumber(0);
+		tourGuideService = new TourGuideService(locationProvider, rewardsService, new InMemoryUserRepository());
+		tourGuideService.tracker.stopTracking();
+
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		users = new ArrayList<>(userCount);
+		for(int i = 0; i < userCount; i++) {
+			User user = new User(UUID.randomUUID(), "internalUser" + i, "000", "internalUser" + i + "@tourGuide.com");
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(),
+					new Location(random.nextDouble(-85, 85), random.nextDouble(-180, 180)), new Date()));
+			users.add(user);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		tourGuideService.tracker.stopTracking();
+	}
+
+	@Benchmark
+	public String getNearbyAttractions() {
+		User user = users.get(ThreadLocalRandom.current().nextInt(users.size()));
+		return tourGuideService.getUserLocationAsync(user)
+				.thenCompose(visitedLocation -> tourGuideService.getNearbyAttractionDetails(user, visitedLocation))
+				.thenApply(NearbyAttractionsWriter::toJson)
+				.join();
+	}
+}
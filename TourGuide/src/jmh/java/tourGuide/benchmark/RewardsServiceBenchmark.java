@@ -0,0 +1,86 @@
+package tourGuide.benchmark;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import tourGuide.geo.DistanceMode;
+import tourGuide.location.LocationProvider;
+import tourGuide.location.SimulatedLocationProvider;
+import tourGuide.service.RewardsService;
+import tourGuide.user.User;
+import tourGuide.user.UserReward;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RewardsServiceBenchmark {
+
+	@Param({"LAW_OF_COSINES", "HAVERSINE", "EQUIRECTANGULAR"})
+	public DistanceMode distanceMode;
+
+	private RewardsService rewardsService;
+	private List<Attraction> attractions;
+	private Location location;
+
+	@Setup
+	public void setUp() {
+		LocationProvider locationProvider = new SimulatedLocationProvider(0, 0, TimeUnit.MILLISECONDS);
+		rewardsService = new RewardsService(locationProvider, new StubRewardCentral(0));
+		rewardsService.setDistanceMode(distanceMode);
+		attractions = locationProvider.getAttractions();
+		location = new Location(40.7128, -74.0060);
+	}
+
+	@Benchmark
+	public double getDistance() {
+		return rewardsService.getDistance(attractions.get(0), location);
+	}
+
+	/**
+	 * A fresh user with three locations, one of them on an attraction, as after initial tracking.
+	 */
+	@Benchmark
+	public User calculateRewards() {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), location, new Date()));
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attractions.get(0), new Date()));
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), location, new Date()));
+		rewardsService.calculateRewards(user);
+		return user;
+	}
+
+	/**
+	 * Rewards every attraction, then offers each one again as a duplicate.
+	 */
+	@Benchmark
+	public User addUserReward() {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), location, new Date());
+		for(int i = 0; i < 2; i++) {
+			for(Attraction attraction : attractions) {
+				user.addUserReward(new UserReward(visitedLocation, attraction, 100));
+			}
+		}
+		return user;
+	}
+}
@@ -0,0 +1,27 @@
+package tourGuide.benchmark;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import rewardCentral.RewardCentral;
+
+/**
+ * RewardCentral stand-in with a configurable latency instead of the jar's random sleep of up to a second.
+ */
+public class StubRewardCentral extends RewardCentral {
+	private final long latencyNanos;
+
+	public StubRewardCentral(long latencyMillis) {
+		this.latencyNanos = TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+	}
+
+	@Override
+	public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+		if(latencyNanos > 0) {
+			LockSupport.parkNanos(latencyNanos);
+		}
+		return ThreadLocalRandom.current().nextInt(1, 1000);
+	}
+}
@@ -0,0 +1,94 @@
+package tourGuide.benchmark;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jsoniter.output.JsonStream;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import tourGuide.dto.NearbyAttraction;
+import tourGuide.helper.InternalTestHelper;
+import tourGuide.json.NearbyAttractionsWriter;
+import tourGuide.json.RewardsWriter;
+import tourGuide.location.LocationProvider;
+import tourGuide.location.SimulatedLocationProvider;
+import tourGuide.repository.InMemoryUserRepository;
+import tourGuide.service.RewardsService;
+import tourGuide.service.TourGuideService;
+import tourGuide.user.User;
+import tourGuide.user.UserReward;
+
+/**
+ * Request path costs: the nearby attraction lookup and the JSON payloads TourGuideController serializes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TourGuideServiceBenchmark {
+	private TourGuideService tourGuideService;
+	private VisitedLocation visitedLocation;
+	private List<NearbyAttraction> nearbyAttractions;
+	private List<UserReward> userRewards;
+
+	@Setup
+	public void setUp() {
+		LocationProvider locationProvider = new SimulatedLocationProvider(0, 0, TimeUnit.MILLISECONDS);
+		RewardsService rewardsService = new RewardsService(locationProvider, new StubRewardCentral(0));
+		InternalTestHelper.setInternalUserNumber(0);
+		tourGuideService = new TourGuideService(locationProvider, rewardsService, new InMemoryUserRepository());
+		tourGuideService.tracker.stopTracking();
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		List<Attraction> attractions = locationProvider.getAttractions();
+		visitedLocation = new VisitedLocation(user.getUserId(), new Location(34.0, -117.0), new Date());
+		for(Attraction attraction : attractions) {
+			user.addUserReward(new UserReward(visitedLocation, attraction, 100));
+		}
+		userRewards = tourGuideService.getUserRewards(user);
+		nearbyAttractions = tourGuideService.getNearbyAttractionDetails(user, visitedLocation).join();
+	}
+
+	@TearDown
+	public void tearDown() {
+		tourGuideService.tracker.stopTracking();
+	}
+
+	@Benchmark
+	public List<Attraction> getNearByAttractions() {
+		return tourGuideService.getNearByAttractions(visitedLocation);
+	}
+
+	@Benchmark
+	public String serializeLocation() {
+		return JsonStream.serialize(visitedLocation.location);
+	}
+
+	@Benchmark
+	public String serializeNearbyAttractions() {
+		return NearbyAttractionsWriter.toJson(nearbyAttractions);
+	}
+
+	@Benchmark
+	public String serializeRewards() {
+		return RewardsWriter.toJson(userRewards);
+	}
+}
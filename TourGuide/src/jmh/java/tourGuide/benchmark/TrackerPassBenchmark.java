@@ -0,0 +1,100 @@
+package tourGuide.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import tourGuide.execution.ExecutionMode;
+import tourGuide.helper.InternalTestHelper;
+import tourGuide.location.LocationProvider;
+import tourGuide.location.SimulatedLocationProvider;
+import tourGuide.repository.InMemoryUserRepository;
+import tourGuide.service.RewardsService;
+import tourGuide.service.TourGuideService;
+import tourGuide.tracker.Tracker;
+import tourGuide.user.User;
+
+/**
+ * One full tracker pass over the whole user base, until the rewards pipeline has caught up as well, against stubs
+ * with a fixed latency per upstream call.
+ * Tune with e.g. -p userCount=100000 -p gpsLatencyMillis=50; compare the execution modes with
+ * -p userCount=100000 -prof gc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class TrackerPassBenchmark {
+
+	@Param({"1000", "10000", "100000"})
+	public int userCount;
+
+	@Param({"10"})
+	public long gpsLatencyMillis;
+
+	@Param({"10"})
+	public long rewardLatencyMillis;
+
+	@Param({"100"})
+	public int trackingPoolSize;
+
+	@Param({"PLATFORM", "VIRTUAL"})
+	public ExecutionMode executionMode;
+
+	private TourGuideService tourGuideService;
+	private Tracker tracker;
+	private List<User> users;
+
+	@Setup
+	public void setUp() {
+		LocationProvider locationProvider = new SimulatedLocationProvider(gpsLatencyMillis, 0, TimeUnit.MILLISECONDS);
+		RewardsService rewardsService = new RewardsService(locationProvider, new StubRewardCentral(rewardLatencyMillis), executionMode);
+		InternalTestHelper.setInternalUserNumber(0);
+		tourGuideService = new TourGuideService(locationProvider, rewardsService, new InMemoryUserRepository());
+		tourGuideService.tracker.stopTracking();
+
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		users = new ArrayList<>(userCount);
+		for(int i = 0; i < userCount; i++) {
+			User user = new User(UUID.randomUUID(), "internalUser" + i, "000", "internalUser" + i + "@tourGuide.com");
+			for(int j = 0; j < 3; j++) {
+				user.addToVisitedLocations(new VisitedLocation(user.getUserId(),
+						new Location(random.nextDouble(-85, 85), random.nextDouble(-180, 180)), new Date()));
+			}
+			users.add(user);
+		}
+		tracker = new Tracker(tourGuideService, trackingPoolSize);
+	}
+
+	@TearDown
+	public void tearDown() {
+		tracker.stopTracking();
+	}
+
+	@Benchmark
+	public long trackerPass() throws InterruptedException {
+		long passDuration = tracker.trackUsers(users);
+		tourGuideService.rewardsPipeline.awaitIdle(1, TimeUnit.HOURS);
+		return passDuration;
+	}
+}
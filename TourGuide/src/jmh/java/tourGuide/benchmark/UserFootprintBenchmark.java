@@ -0,0 +1,128 @@
+package tourGuide.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import tourGuide.user.User;
+import tourGuide.user.UserReward;
+
+/**
+ * Heap retained per user for its location history and rewards; read the bytesPerUser row. COMPACT builds real
+ * {@link User}s, OBJECTS only lists of gpsUtil objects, without the User's own fields and reward index, so the gap
+ * understates the saving. The time rows only measure building the users.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+// event counters add up over the iterations, so a single one keeps bytesPerUser per user
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = {"-XX:+UseSerialGC", "-Xmx2g"})
+public class UserFootprintBenchmark {
+
+	public enum Storage { COMPACT, OBJECTS }
+
+	@Param({"COMPACT", "OBJECTS"})
+	public Storage storage;
+
+	@Param({"10000"})
+	public int userCount;
+
+	@Param({"100"})
+	public int historySize;
+
+	@Param({"10"})
+	public int rewardCount;
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Footprint {
+		public long bytesPerUser;
+	}
+
+	@Benchmark
+	public Object buildUsers(Footprint footprint) {
+		SplittableRandom random = new SplittableRandom(42);
+		List<Attraction> attractions = new ArrayList<>();
+		for(int i = 0; i < 26; i++) {
+			attractions.add(new Attraction("Attraction" + i, "City", "ST", random.nextDouble(-85, 85), random.nextDouble(-180, 180)));
+		}
+		long before = usedHeap();
+		List<Object> users = new ArrayList<>(userCount);
+		long now = System.currentTimeMillis();
+		for(int i = 0; i < userCount; i++) {
+			UUID userId = new UUID(random.nextLong(), random.nextLong());
+			users.add(storage == Storage.COMPACT
+					? compactUser(userId, attractions, random, now)
+					: objectUser(userId, attractions, random, now));
+		}
+		footprint.bytesPerUser = (usedHeap() - before) / userCount;
+		return users;
+	}
+
+	private User compactUser(UUID userId, List<Attraction> attractions, SplittableRandom random, long now) {
+		User user = new User(userId, "", "", "");
+		for(int i = 0; i < historySize; i++) {
+			user.addToVisitedLocations(visitedLocation(userId, random, now - (historySize - i) * 60_000L));
+		}
+		for(int i = 0; i < rewardCount; i++) {
+			user.addUserReward(new UserReward(visitedLocation(userId, random, now), attractions.get(i % attractions.size()), 100));
+		}
+		return user;
+	}
+
+	private Object objectUser(UUID userId, List<Attraction> attractions, SplittableRandom random, long now) {
+		List<VisitedLocation> visitedLocations = new ArrayList<>();
+		for(int i = 0; i < historySize; i++) {
+			visitedLocations.add(visitedLocation(userId, random, now - (historySize - i) * 60_000L));
+		}
+		List<ObjectReward> rewards = new ArrayList<>();
+		for(int i = 0; i < rewardCount; i++) {
+			rewards.add(new ObjectReward(visitedLocation(userId, random, now), attractions.get(i % attractions.size()), 100));
+		}
+		return new Object[] { userId, visitedLocations, rewards };
+	}
+
+	private static VisitedLocation visitedLocation(UUID userId, SplittableRandom random, long time) {
+		return new VisitedLocation(userId, new Location(random.nextDouble(-85, 85), random.nextDouble(-180, 180)), new Date(time));
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for(int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static final class ObjectReward {
+		final VisitedLocation visitedLocation;
+		final Attraction attraction;
+		final int rewardPoints;
+
+		ObjectReward(VisitedLocation visitedLocation, Attraction attraction, int rewardPoints) {
+			this.visitedLocation = visitedLocation;
+			this.attraction = attraction;
+			this.rewardPoints = rewardPoints;
+		}
+	}
+}
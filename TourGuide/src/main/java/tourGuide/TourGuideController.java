@@ -1,15 +1,28 @@
 package tourGuide;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import jakarta.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.jsoniter.output.JsonStream;
 
-import gpsUtil.location.VisitedLocation;
+import tourGuide.json.CurrentLocationsWriter;
+import tourGuide.json.NearbyAttractionsWriter;
+import tourGuide.json.RewardsWriter;
+import tourGuide.resilience.UpstreamUnavailableException;
 import tourGuide.service.TourGuideService;
 import tourGuide.user.User;
 import tripPricer.Provider;
@@ -26,44 +39,41 @@ public class TourGuideController {
     }
     
     @RequestMapping("/getLocation") 
-    public String getLocation(@RequestParam String userName) {
-    	VisitedLocation visitedLocation = tourGuideService.getUserLocation(getUser(userName));
-		return JsonStream.serialize(visitedLocation.location);
+    public CompletableFuture<String> getLocation(@RequestParam String userName) {
+    	return tourGuideService.getUserLocationAsync(getUser(userName))
+    			.thenApply(visitedLocation -> JsonStream.serialize(visitedLocation.location));
     }
     
-    //  TODO: Change this method to no longer return a List of Attractions.
- 	//  Instead: Get the closest five tourist attractions to the user - no matter how far away they are.
- 	//  Return a new JSON object that contains:
-    	// Name of Tourist attraction, 
-        // Tourist attractions lat/long, 
-        // The user's location lat/long, 
-        // The distance in miles between the user's location and each of the attractions.
-        // The reward points for visiting each Attraction.
-        //    Note: Attraction reward points can be gathered from RewardsCentral
+    /**
+     * The five attractions closest to the user, however far away, with their distance and reward points.
+     */
     @RequestMapping("/getNearbyAttractions") 
-    public String getNearbyAttractions(@RequestParam String userName) {
-    	VisitedLocation visitedLocation = tourGuideService.getUserLocation(getUser(userName));
-    	return JsonStream.serialize(tourGuideService.getNearByAttractions(visitedLocation));
+    public CompletableFuture<String> getNearbyAttractions(@RequestParam String userName) {
+    	User user = getUser(userName);
+    	return tourGuideService.getUserLocationAsync(user)
+    			.thenCompose(visitedLocation -> tourGuideService.getNearbyAttractionDetails(user, visitedLocation))
+    			.thenApply(NearbyAttractionsWriter::toJson);
     }
     
     @RequestMapping("/getRewards") 
     public String getRewards(@RequestParam String userName) {
-    	return JsonStream.serialize(tourGuideService.getUserRewards(getUser(userName)));
+    	return RewardsWriter.toJson(tourGuideService.getUserRewards(getUser(userName)));
     }
     
+    /**
+     * Streams a JSON mapping of userId to stored location, without querying gpsUtil. Pass limit to page through the
+     * users in userId order; a full page sets the X-Next-After header to its last userId, which the next request
+     * passes as after. Users added meanwhile are picked up where their id falls, never shifting or repeating others.
+     */
     @RequestMapping("/getAllCurrentLocations")
-    public String getAllCurrentLocations() {
-    	// TODO: Get a list of every user's most recent location as JSON
-    	//- Note: does not use gpsUtil to query for their current location, 
-    	//        but rather gathers the user's current location from their stored location history.
-    	//
-    	// Return object should be the just a JSON mapping of userId to Locations similar to:
-    	//     {
-    	//        "019b04a9-067a-4c76-8817-ee75088c3822": {"longitude":-48.188821,"latitude":74.84371} 
-    	//        ...
-    	//     }
-    	
-    	return JsonStream.serialize("");
+    public void getAllCurrentLocations(@RequestParam(required = false) UUID after,
+    		@RequestParam(defaultValue = "0") int limit, HttpServletResponse response) throws IOException {
+    	List<User> users = tourGuideService.getUsersAfter(after, limit);
+    	if(limit > 0 && users.size() == limit) {
+    		response.setHeader("X-Next-After", users.get(users.size() - 1).getUserId().toString());
+    	}
+    	response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    	CurrentLocationsWriter.write(users, response.getOutputStream());
     }
     
     @RequestMapping("/getTripDeals")
@@ -72,9 +82,19 @@ public class TourGuideController {
     	return JsonStream.serialize(providers);
     }
     
+    /**
+     * An upstream that cannot answer right now, with no fallback available, is reported as 503 so clients retry.
+     */
+    @ExceptionHandler(UpstreamUnavailableException.class)
+    public ResponseEntity<String> upstreamUnavailable(UpstreamUnavailableException e) {
+    	return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+    			.header(HttpHeaders.RETRY_AFTER, "1")
+    			.body(e.getMessage());
+    }
+    
     private User getUser(String userName) {
     	return tourGuideService.getUser(userName);
     }
    
 
-}
\ No newline at end of file
+}
\ No newline at end of file
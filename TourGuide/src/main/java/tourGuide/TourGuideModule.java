@@ -1,23 +1,95 @@
 package tourGuide;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import gpsUtil.GpsUtil;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import rewardCentral.RewardCentral;
+import tourGuide.cache.CacheMetrics;
+import tourGuide.cluster.ClusterMembership;
+import tourGuide.execution.ExecutionMode;
+import tourGuide.location.GpsUtilLocationProvider;
+import tourGuide.location.LocationProvider;
+import tourGuide.persistence.PersistentUserRepository;
+import tourGuide.repository.InMemoryUserRepository;
+import tourGuide.repository.UserRepository;
+import tourGuide.resilience.UpstreamGuardMetrics;
+import tourGuide.rewards.RewardsPipelineMetrics;
+import tourGuide.service.InternalUsersHealthIndicator;
 import tourGuide.service.RewardsService;
+import tourGuide.service.TourGuideService;
+import tourGuide.tracker.TrackerMetrics;
+import tourGuide.user.HistoryRetentionPolicy;
 
 @Configuration
 public class TourGuideModule {
 	
+	@Value("${tourguide.execution.mode:PLATFORM}")
+	private ExecutionMode executionMode;
+	
+	@Value("${tourguide.attractions.refresh-minutes:60}")
+	private long attractionRefreshMinutes;
+	
+	@Value("${tourguide.upstream.gpsutil.calls-per-second:1000}")
+	private double gpsUtilCallsPerSecond;
+	
+	@Value("${tourguide.upstream.rewardcentral.calls-per-second:1000}")
+	private double rewardCentralCallsPerSecond;
+	
+	@Value("${tourguide.history.max-entries:1000}")
+	private int historyMaxEntries;
+	
+	@Value("${tourguide.history.max-age-minutes:0}")
+	private long historyMaxAgeMinutes;
+	
+	@Value("${tourguide.history.downsample-after-minutes:1440}")
+	private long historyDownsampleAfterMinutes;
+	
+	@Value("${tourguide.history.downsample-interval-minutes:60}")
+	private long historyDownsampleIntervalMinutes;
+	
 	@Bean
 	public GpsUtil getGpsUtil() {
 		return new GpsUtil();
 	}
 	
+	@Bean
+	public LocationProvider getLocationProvider() {
+		return new GpsUtilLocationProvider(getGpsUtil(), GpsUtilLocationProvider.defaultBatchPoolSize, executionMode,
+				gpsUtilCallsPerSecond);
+	}
+	
+	/**
+	 * The attraction catalog is loaded in the background at startup, then refreshed every
+	 * tourguide.attractions.refresh-minutes.
+	 */
 	@Bean
 	public RewardsService getRewardsService() {
-		return new RewardsService(getGpsUtil(), getRewardCentral());
+		RewardsService rewardsService = new RewardsService(getLocationProvider(), getRewardCentral(), executionMode,
+				rewardCentralCallsPerSecond);
+		rewardsService.getAttractionCatalog().startRefreshing(attractionRefreshMinutes, TimeUnit.MINUTES);
+		return rewardsService;
+	}
+	
+	/**
+	 * Runs the request handlers on virtual threads as well in VIRTUAL mode.
+	 */
+	@Bean
+	public TomcatProtocolHandlerCustomizer<?> getRequestHandlerCustomizer() {
+		return protocolHandler -> {
+			if(executionMode == ExecutionMode.VIRTUAL) {
+				protocolHandler.setExecutor(executionMode.newExecutor("http-handler", 0));
+			}
+		};
 	}
 	
 	@Bean
@@ -25,4 +97,85 @@ public class TourGuideModule {
 		return new RewardCentral();
 	}
 	
+	/**
+	 * Made the default policy, so every user created from then on keeps its visited locations according to the
+	 * tourguide.history properties.
+	 */
+	@Bean
+	public HistoryRetentionPolicy getHistoryRetentionPolicy() {
+		HistoryRetentionPolicy policy = new HistoryRetentionPolicy(historyMaxEntries,
+				TimeUnit.MINUTES.toMillis(historyMaxAgeMinutes), TimeUnit.MINUTES.toMillis(historyDownsampleAfterMinutes),
+				TimeUnit.MINUTES.toMillis(historyDownsampleIntervalMinutes));
+		HistoryRetentionPolicy.setDefaultPolicy(policy);
+		return policy;
+	}
+	
+	/**
+	 * Takes the history retention policy so it is in place before stored users are loaded or internal users are
+	 * generated.
+	 */
+	@Bean
+	public UserRepository getUserRepository(HistoryRetentionPolicy historyRetentionPolicy,
+			@Value("${tourguide.persistence.enabled:false}") boolean persistenceEnabled,
+			@Value("${tourguide.persistence.directory:data}") String directory) throws IOException {
+		if(persistenceEnabled) {
+			return PersistentUserRepository.open(Paths.get(directory));
+		}
+		return new InMemoryUserRepository();
+	}
+	
+	/**
+	 * Tracking is split between the nodes listed in the members file, or else in the members list; with neither,
+	 * this node tracks every user.
+	 */
+	@Bean(destroyMethod = "close")
+	public ClusterMembership getClusterMembership(@Value("${tourguide.cluster.node-id:}") String nodeId,
+			@Value("${tourguide.cluster.members:}") List<String> members,
+			@Value("${tourguide.cluster.members-file:}") String membersFile) throws IOException {
+		if(!membersFile.isEmpty()) {
+			return ClusterMembership.fromFile(requireNodeId(nodeId), Paths.get(membersFile));
+		}
+		if(!members.isEmpty()) {
+			return ClusterMembership.fixed(requireNodeId(nodeId), members);
+		}
+		return ClusterMembership.standalone();
+	}
+	
+	private static String requireNodeId(String nodeId) {
+		if(nodeId.isEmpty()) {
+			throw new IllegalArgumentException("tourguide.cluster.node-id is required when cluster members are configured");
+		}
+		return nodeId;
+	}
+	
+	@Bean
+	public MeterBinder getRewardPointsCacheMetrics() {
+		return new CacheMetrics("rewardPoints", getRewardsService().getRewardPointsCache());
+	}
+	
+	@Bean
+	public MeterBinder getTripDealsCacheMetrics(TourGuideService tourGuideService) {
+		return new CacheMetrics("tripDeals", tourGuideService.getTripDealsCache());
+	}
+	
+	@Bean
+	public MeterBinder getRewardsPipelineMetrics(TourGuideService tourGuideService) {
+		return new RewardsPipelineMetrics(tourGuideService.rewardsPipeline);
+	}
+	
+	@Bean
+	public MeterBinder getTrackerMetrics(TourGuideService tourGuideService) {
+		return new TrackerMetrics(tourGuideService.tracker);
+	}
+	
+	@Bean
+	public MeterBinder getUpstreamGuardMetrics(TourGuideService tourGuideService) {
+		return new UpstreamGuardMetrics(tourGuideService.getUpstreamGuards());
+	}
+	
+	@Bean
+	public HealthIndicator internalUsersHealthIndicator(TourGuideService tourGuideService) {
+		return new InternalUsersHealthIndicator(tourGuideService);
+	}
+	
 }
@@ -0,0 +1,35 @@
+package tourGuide.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Publishes a {@link LoadingCache}'s hit, miss, eviction and size figures through the actuator metrics endpoint.
+ */
+public class CacheMetrics implements MeterBinder {
+	private final String cacheName;
+	private final LoadingCache<?, ?> cache;
+
+	public CacheMetrics(String cacheName, LoadingCache<?, ?> cache) {
+		this.cacheName = cacheName;
+		this.cache = cache;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter.builder("tourguide.cache.gets", cache, LoadingCache::getHitCount)
+				.tag("cache", cacheName).tag("result", "hit")
+				.register(registry);
+		FunctionCounter.builder("tourguide.cache.gets", cache, LoadingCache::getMissCount)
+				.tag("cache", cacheName).tag("result", "miss")
+				.register(registry);
+		FunctionCounter.builder("tourguide.cache.evictions", cache, LoadingCache::getEvictionCount)
+				.tag("cache", cacheName)
+				.register(registry);
+		Gauge.builder("tourguide.cache.size", cache, LoadingCache::size)
+				.tag("cache", cacheName)
+				.register(registry);
+	}
+}
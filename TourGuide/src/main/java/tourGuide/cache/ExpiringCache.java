@@ -0,0 +1,156 @@
+package tourGuide.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * {@link LoadingCache} bounded by size (least recently used entries go first) and by time since load.
+ * <p>
+ * With coalescing enabled, concurrent misses on the same key share a single call to the loader instead of each
+ * calling the upstream service. Loads always run outside the cache lock.
+ */
+public class ExpiringCache<K, V> implements LoadingCache<K, V> {
+	private final int maxSize;
+	private final long ttlNanos;
+	private final boolean coalescing;
+	private final Map<K, CachedValue<V>> entries;
+	private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	public ExpiringCache(int maxSize, long ttl, TimeUnit ttlUnit, boolean coalescing) {
+		if(maxSize < 1) {
+			throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+		}
+		this.maxSize = maxSize;
+		this.ttlNanos = ttlUnit.toNanos(ttl);
+		this.coalescing = coalescing;
+		this.entries = new LinkedHashMap<K, CachedValue<V>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, CachedValue<V>> eldest) {
+				if(size() > ExpiringCache.this.maxSize) {
+					evictions.increment();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	@Override
+	public V get(K key, Function<? super K, ? extends V> loader) {
+		V cached = getIfPresent(key);
+		if(cached != null) {
+			hits.increment();
+			return cached;
+		}
+		misses.increment();
+		if(!coalescing) {
+			return load(key, loader);
+		}
+
+		CompletableFuture<V> pending = new CompletableFuture<>();
+		CompletableFuture<V> existing = inFlight.putIfAbsent(key, pending);
+		if(existing != null) {
+			try {
+				return existing.join();
+			} catch (CompletionException e) {
+				throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+			}
+		}
+		try {
+			// a load that finished between our miss and winning the in-flight slot has already filled the entry
+			V value = getIfPresent(key);
+			if(value == null) {
+				value = load(key, loader);
+			}
+			pending.complete(value);
+			return value;
+		} catch (RuntimeException e) {
+			pending.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, pending);
+		}
+	}
+
+	@Override
+	public void invalidate(K key) {
+		synchronized(entries) {
+			entries.remove(key);
+		}
+	}
+
+	@Override
+	public void invalidateAll() {
+		synchronized(entries) {
+			entries.clear();
+		}
+	}
+
+	@Override
+	public long size() {
+		synchronized(entries) {
+			return entries.size();
+		}
+	}
+
+	@Override
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	@Override
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	@Override
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	private V getIfPresent(K key) {
+		synchronized(entries) {
+			CachedValue<V> entry = entries.get(key);
+			if(entry == null) {
+				return null;
+			}
+			if(System.nanoTime() - entry.loadedAt >= ttlNanos) {
+				entries.remove(key);
+				evictions.increment();
+				return null;
+			}
+			return entry.value;
+		}
+	}
+
+	private V load(K key, Function<? super K, ? extends V> loader) {
+		V value = loader.apply(key);
+		if(value != null) {
+			synchronized(entries) {
+				entries.put(key, new CachedValue<>(value, System.nanoTime()));
+			}
+		}
+		return value;
+	}
+
+	private static class CachedValue<V> {
+		final V value;
+		final long loadedAt;
+
+		CachedValue(V value, long loadedAt) {
+			this.value = value;
+			this.loadedAt = loadedAt;
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package tourGuide.cache;
+
+import java.util.function.Function;
+
+/**
+ * Read-through cache: callers hand in the loader used on a miss.
+ */
+public interface LoadingCache<K, V> {
+
+	V get(K key, Function<? super K, ? extends V> loader);
+
+	void invalidate(K key);
+
+	void invalidateAll();
+
+	long size();
+
+	long getHitCount();
+
+	long getMissCount();
+
+	long getEvictionCount();
+}
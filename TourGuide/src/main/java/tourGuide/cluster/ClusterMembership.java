@@ -0,0 +1,124 @@
+package tourGuide.cluster;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import tourGuide.helper.DaemonThreadFactory;
+
+/**
+ * The nodes sharing the tracking work and this node's place among them. Users are owned through a {@link HashRing}
+ * over the members, which is replaced as a whole whenever the membership changes.
+ * <p>
+ * Members come from a fixed list or from a file listing one node id per line, blank lines and lines starting with #
+ * ignored. The file is read again periodically, so nodes join and leave by editing it. A local node missing from
+ * the members owns no users.
+ */
+public class ClusterMembership implements Closeable {
+	private Logger logger = LoggerFactory.getLogger(ClusterMembership.class);
+	public static final String standaloneNode = "standalone";
+	public static final long defaultRefreshMillis = 5000;
+
+	private final String localNode;
+	private final ScheduledExecutorService refresher;
+	private volatile HashRing ring;
+
+	private ClusterMembership(String localNode, Collection<String> members, ScheduledExecutorService refresher) {
+		this.localNode = localNode;
+		this.refresher = refresher;
+		this.ring = new HashRing(members);
+	}
+
+	/**
+	 * @return a single node owning every user
+	 */
+	public static ClusterMembership standalone() {
+		return fixed(standaloneNode, Collections.singleton(standaloneNode));
+	}
+
+	public static ClusterMembership fixed(String localNode, Collection<String> members) {
+		return new ClusterMembership(localNode, members, null);
+	}
+
+	public static ClusterMembership fromFile(String localNode, Path membersFile) throws IOException {
+		return fromFile(localNode, membersFile, defaultRefreshMillis);
+	}
+
+	/**
+	 * Reads the members from the file now, then again every refresh interval. A file that cannot be read or lists
+	 * no members keeps the current ring.
+	 */
+	public static ClusterMembership fromFile(String localNode, Path membersFile, long refreshMillis) throws IOException {
+		Set<String> members = readMembers(membersFile);
+		if(members.isEmpty()) {
+			throw new IllegalArgumentException("No members listed in " + membersFile);
+		}
+		ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("cluster-membership"));
+		ClusterMembership membership = new ClusterMembership(localNode, members, refresher);
+		refresher.scheduleWithFixedDelay(() -> membership.refresh(membersFile),
+				refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+		return membership;
+	}
+
+	public boolean owns(UUID userId) {
+		return localNode.equals(ring.owner(userId));
+	}
+
+	public String getLocalNode() {
+		return localNode;
+	}
+
+	/**
+	 * @return the current ring; a different instance means the membership changed
+	 */
+	public HashRing getRing() {
+		return ring;
+	}
+
+	@Override
+	public void close() {
+		if(refresher != null) {
+			refresher.shutdownNow();
+		}
+	}
+
+	private void refresh(Path membersFile) {
+		try {
+			Set<String> members = readMembers(membersFile);
+			if(members.isEmpty()) {
+				logger.warn("No members listed in " + membersFile + ", keeping " + ring.getNodes());
+				return;
+			}
+			if(!members.equals(new LinkedHashSet<>(ring.getNodes()))) {
+				ring = new HashRing(members);
+				logger.info("Cluster membership changed to " + ring.getNodes() + (ring.getNodes().contains(localNode) ? "" : ", without " + localNode));
+			}
+		} catch (IOException | RuntimeException e) {
+			logger.error("Failed to read cluster members from " + membersFile, e);
+		}
+	}
+
+	private static Set<String> readMembers(Path membersFile) throws IOException {
+		Set<String> members = new LinkedHashSet<>();
+		for(String line : Files.readAllLines(membersFile, StandardCharsets.UTF_8)) {
+			String member = line.trim();
+			if(!member.isEmpty() && !member.startsWith("#")) {
+				members.add(member);
+			}
+		}
+		return members;
+	}
+}
@@ -0,0 +1,101 @@
+package tourGuide.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Immutable consistent-hash ring assigning each user id to one node.
+ * <p>
+ * Every node is placed at a number of virtual points on a 64-bit ring and owns the ids hashing between its points and
+ * the previous ones. Adding or removing a node therefore only moves the ids next to that node's points, about one in
+ * N of them, while virtual points keep the shares even.
+ */
+public class HashRing {
+	public static final int defaultVirtualNodes = 128;
+
+	private final List<String> nodes;
+	private final long[] points;
+	private final String[] owners;
+
+	public HashRing(Collection<String> nodes) {
+		this(nodes, defaultVirtualNodes);
+	}
+
+	public HashRing(Collection<String> nodes, int virtualNodes) {
+		if(nodes.isEmpty() || virtualNodes < 1) {
+			throw new IllegalArgumentException("A ring needs at least one node and one virtual node per node");
+		}
+		this.nodes = Collections.unmodifiableList(new ArrayList<>(new TreeSet<>(nodes)));
+		long[][] entries = new long[this.nodes.size() * virtualNodes][];
+		int count = 0;
+		for(int node = 0; node < this.nodes.size(); node++) {
+			for(int i = 0; i < virtualNodes; i++) {
+				entries[count++] = new long[] { hash(this.nodes.get(node) + "#" + i), node };
+			}
+		}
+		// ties, however unlikely, go to the node sorting first so every member builds the same ring
+		Arrays.sort(entries, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+		points = new long[count];
+		owners = new String[count];
+		for(int i = 0; i < count; i++) {
+			points[i] = entries[i][0];
+			owners[i] = this.nodes.get((int) entries[i][1]);
+		}
+	}
+
+	/**
+	 * @return the node owning the id: the first point at or after the id's hash, wrapping around
+	 */
+	public String owner(UUID id) {
+		if(nodes.size() == 1) {
+			return nodes.get(0);
+		}
+		int index = Arrays.binarySearch(points, hash(id));
+		if(index < 0) {
+			index = -index - 1;
+		}
+		return owners[index == points.length ? 0 : index];
+	}
+
+	/**
+	 * @return the distinct nodes, sorted
+	 */
+	public List<String> getNodes() {
+		return nodes;
+	}
+
+	static long hash(UUID id) {
+		return mix(id.getMostSignificantBits() ^ mix(id.getLeastSignificantBits()));
+	}
+
+	static long hash(String value) {
+		// FNV-1a over the UTF-8 bytes, mixed so that similar names land far apart
+		long hash = 0xcbf29ce484222325L;
+		for(byte b : value.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b & 0xFF;
+			hash *= 0x100000001b3L;
+		}
+		return mix(hash);
+	}
+
+	private static long mix(long value) {
+		// MurmurHash3 finalizer
+		value ^= value >>> 33;
+		value *= 0xff51afd7ed558ccdL;
+		value ^= value >>> 33;
+		value *= 0xc4ceb9fe1a85ec53L;
+		value ^= value >>> 33;
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return "HashRing" + nodes;
+	}
+}
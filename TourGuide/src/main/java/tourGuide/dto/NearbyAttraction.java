@@ -0,0 +1,27 @@
+package tourGuide.dto;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+/**
+ * One entry of the /getNearbyAttractions response.
+ */
+public class NearbyAttraction {
+	public final String attractionName;
+	public final double attractionLatitude;
+	public final double attractionLongitude;
+	public final double userLatitude;
+	public final double userLongitude;
+	public final double distance;
+	public final int rewardPoints;
+
+	public NearbyAttraction(Attraction attraction, Location userLocation, double distance, int rewardPoints) {
+		this.attractionName = attraction.attractionName;
+		this.attractionLatitude = attraction.latitude;
+		this.attractionLongitude = attraction.longitude;
+		this.userLatitude = userLocation.latitude;
+		this.userLongitude = userLocation.longitude;
+		this.distance = distance;
+		this.rewardPoints = rewardPoints;
+	}
+}
@@ -0,0 +1,53 @@
+package tourGuide.execution;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import tourGuide.helper.DaemonThreadFactory;
+
+/**
+ * How the tracker, the rewards calculations and the request handlers run their blocking gpsUtil, RewardCentral and
+ * TripPricer calls. Set with tourguide.execution.mode.
+ */
+public enum ExecutionMode {
+	/**
+	 * Fixed pools of platform threads.
+	 */
+	PLATFORM {
+		@Override
+		public ThreadFactory threadFactory(String name) {
+			return new DaemonThreadFactory(name);
+		}
+
+		@Override
+		public ExecutorService newExecutor(String name, int poolSize) {
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<>(), threadFactory(name));
+			executor.allowCoreThreadTimeOut(true);
+			return executor;
+		}
+	},
+	/**
+	 * A virtual thread per task, which gives its carrier thread back while blocked. Pool sizes are ignored; the
+	 * {@link tourGuide.resilience.UpstreamGuard} bulkheads still bound the concurrent calls to each upstream.
+	 */
+	VIRTUAL {
+		@Override
+		public ThreadFactory threadFactory(String name) {
+			return Thread.ofVirtual().name(name + "-", 1).factory();
+		}
+
+		@Override
+		public ExecutorService newExecutor(String name, int poolSize) {
+			return Executors.newThreadPerTaskExecutor(threadFactory(name));
+		}
+	};
+
+	public abstract ThreadFactory threadFactory(String name);
+
+	public abstract ExecutorService newExecutor(String name, int poolSize);
+}
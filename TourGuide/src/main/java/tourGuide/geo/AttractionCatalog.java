@@ -0,0 +1,133 @@
+package tourGuide.geo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gpsUtil.location.Attraction;
+import tourGuide.helper.DaemonThreadFactory;
+import tourGuide.user.AttractionRegistry;
+
+/**
+ * The current attractions as an immutable {@link AttractionIndex}, with each attraction's trigonometric terms
+ * computed once. Readers get the snapshot with a single volatile read. A refresh builds a new index on the side and
+ * swaps it in whole.
+ * <p>
+ * The snapshot holds the {@link AttractionRegistry}'s instances, so attractions keep their ids and int indexes
+ * across refreshes even though gpsUtil hands out new ids on every call. A refresh that finds the same attractions
+ * keeps the current snapshot and does not notify the change listener.
+ */
+public class AttractionCatalog {
+	private Logger logger = LoggerFactory.getLogger(AttractionCatalog.class);
+	public static final long defaultRefreshMinutes = 60;
+
+	private final Supplier<List<Attraction>> source;
+	private final Runnable changeListener;
+	private volatile DistanceMode distanceMode;
+	private volatile AttractionIndex snapshot;
+	private ScheduledExecutorService refresher;
+
+	/**
+	 * @param changeListener called after the attractions or the distance mode changed
+	 */
+	public AttractionCatalog(Supplier<List<Attraction>> source, DistanceMode distanceMode, Runnable changeListener) {
+		this.source = source;
+		this.distanceMode = distanceMode;
+		this.changeListener = changeListener;
+	}
+
+	/**
+	 * @return the current snapshot, loading the attractions on first use if no refresh has yet
+	 */
+	public AttractionIndex getSnapshot() {
+		AttractionIndex index = snapshot;
+		if(index == null) {
+			synchronized(this) {
+				index = snapshot;
+				if(index == null) {
+					index = AttractionIndex.of(load(), distanceMode);
+					snapshot = index;
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Loads the attractions now and swaps in a new snapshot if they changed.
+	 *
+	 * @return whether the snapshot was replaced
+	 */
+	public boolean refresh() {
+		List<Attraction> attractions;
+		// loading under the lock makes a first reader wait for this load rather than start its own
+		synchronized(this) {
+			attractions = load();
+			AttractionIndex current = snapshot;
+			// registry instances compare by identity, so equal lists mean the same attractions
+			if(current != null && current.getAttractions().equals(attractions)) {
+				return false;
+			}
+			snapshot = AttractionIndex.of(attractions, distanceMode);
+			if(current == null) {
+				return true;
+			}
+		}
+		logger.info("Attraction catalog changed to " + attractions.size() + " attractions");
+		changeListener.run();
+		return true;
+	}
+
+	/**
+	 * Rebuilds the snapshot over the same attractions with the new distance mode.
+	 */
+	public void setDistanceMode(DistanceMode distanceMode) {
+		synchronized(this) {
+			this.distanceMode = distanceMode;
+			AttractionIndex current = snapshot;
+			if(current != null) {
+				snapshot = AttractionIndex.of(current.getAttractions(), distanceMode);
+			}
+		}
+		changeListener.run();
+	}
+
+	/**
+	 * Refreshes in the background right away, then every interval. A failed refresh keeps the current snapshot.
+	 */
+	public synchronized void startRefreshing(long interval, TimeUnit unit) {
+		if(refresher != null) {
+			throw new IllegalStateException("Attraction catalog is already refreshing");
+		}
+		refresher = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("attraction-catalog"));
+		refresher.scheduleWithFixedDelay(() -> {
+			try {
+				refresh();
+			} catch (RuntimeException e) {
+				logger.error("Failed to refresh the attraction catalog", e);
+			}
+		}, 0, interval, unit);
+	}
+
+	public synchronized void stopRefreshing() {
+		if(refresher != null) {
+			refresher.shutdownNow();
+			refresher = null;
+		}
+	}
+
+	private List<Attraction> load() {
+		AttractionRegistry registry = AttractionRegistry.getShared();
+		List<Attraction> attractions = new ArrayList<>();
+		for(Attraction attraction : source.get()) {
+			attractions.add(registry.canonical(attraction));
+		}
+		return attractions;
+	}
+}
@@ -0,0 +1,240 @@
+package tourGuide.geo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+/**
+ * Immutable spatial index over a set of attractions.
+ * <p>
+ * Attractions are bucketed into one degree latitude rows, each row sorted by longitude. Radius queries only visit
+ * the rows and the longitude window a spherical cap of that radius can touch; nearest-K queries walk rows outward
+ * from the query latitude and stop once no unvisited row can hold a closer attraction. Building is a single sort,
+ * so an index is cheap to rebuild whenever the attraction list changes.
+ * <p>
+ * Each attraction's trigonometric terms are computed once when the index is built and distances are measured with
+ * the index's {@link DistanceMode}. The search windows are spherical, so with an approximate mode an attraction
+ * right at the edge of the radius can be left out.
+ */
+public class AttractionIndex {
+	private static final int ROWS = 180;
+
+	private final DistanceMode distanceMode;
+	private final Attraction[] attractions;
+	private final GeoPoint[] points;
+	private final Map<UUID, GeoPoint> pointsById = new HashMap<>();
+	private final Attraction[][] rows = new Attraction[ROWS][];
+	private final GeoPoint[][] rowPoints = new GeoPoint[ROWS][];
+	private final double[][] rowLongitudes = new double[ROWS][];
+
+	private AttractionIndex(List<Attraction> attractions, DistanceMode distanceMode) {
+		this.distanceMode = distanceMode;
+		this.attractions = attractions.toArray(new Attraction[0]);
+		this.points = Arrays.stream(this.attractions).map(GeoPoint::of).toArray(GeoPoint[]::new);
+		for(int i = 0; i < points.length; i++) {
+			pointsById.put(this.attractions[i].attractionId, points[i]);
+		}
+		List<List<Attraction>> buckets = new ArrayList<>(ROWS);
+		for(int i = 0; i < ROWS; i++) {
+			buckets.add(new ArrayList<>());
+		}
+		for(Attraction attraction : this.attractions) {
+			buckets.get(rowOf(attraction.latitude)).add(attraction);
+		}
+		for(int i = 0; i < ROWS; i++) {
+			Attraction[] row = buckets.get(i).toArray(new Attraction[0]);
+			Arrays.sort(row, Comparator.comparingDouble(a -> a.longitude));
+			rows[i] = row;
+			rowPoints[i] = Arrays.stream(row).map(GeoPoint::of).toArray(GeoPoint[]::new);
+			rowLongitudes[i] = Arrays.stream(row).mapToDouble(a -> a.longitude).toArray();
+		}
+	}
+
+	public static AttractionIndex of(List<Attraction> attractions) {
+		return of(attractions, DistanceMode.LAW_OF_COSINES);
+	}
+
+	public static AttractionIndex of(List<Attraction> attractions, DistanceMode distanceMode) {
+		return new AttractionIndex(attractions, distanceMode);
+	}
+
+	public DistanceMode getDistanceMode() {
+		return distanceMode;
+	}
+
+	public int size() {
+		return attractions.length;
+	}
+
+	public List<Attraction> getAttractions() {
+		return Collections.unmodifiableList(Arrays.asList(attractions));
+	}
+
+	/**
+	 * @return the attraction's point as computed when the index was built, or a new one for an attraction the index
+	 * does not hold
+	 */
+	public GeoPoint pointOf(Attraction attraction) {
+		GeoPoint point = pointsById.get(attraction.attractionId);
+		return point != null ? point : GeoPoint.of(attraction);
+	}
+
+	/**
+	 * @return every attraction whose great circle distance to the location is at most the given number of miles
+	 */
+	public List<Attraction> within(Location location, double miles) {
+		List<Attraction> result = new ArrayList<>();
+		GeoPoint point = GeoPoint.of(location);
+		double radiusDegrees = miles / GeoMath.STATUTE_MILES_PER_DEGREE;
+		if(radiusDegrees >= 180) {
+			for(int i = 0; i < attractions.length; i++) {
+				addIfWithin(result, attractions[i], points[i], point, miles);
+			}
+			return result;
+		}
+
+		double minLatitude = location.latitude - radiusDegrees;
+		double maxLatitude = location.latitude + radiusDegrees;
+		double longitudeRadius = longitudeRadius(location.latitude, radiusDegrees);
+		for(int row = rowOf(minLatitude); row <= rowOf(maxLatitude); row++) {
+			if(longitudeRadius >= 180) {
+				for(int i = 0; i < rows[row].length; i++) {
+					addIfWithin(result, rows[row][i], rowPoints[row][i], point, miles);
+				}
+				continue;
+			}
+			double west = location.longitude - longitudeRadius;
+			double east = location.longitude + longitudeRadius;
+			collectRange(result, row, Math.max(west, -180), Math.min(east, 180), point, miles);
+			// the window can wrap around the antimeridian
+			if(west < -180) {
+				collectRange(result, row, west + 360, 180, point, miles);
+			}
+			if(east > 180) {
+				collectRange(result, row, -180, east - 360, point, miles);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the k attractions closest to the location, closest first
+	 */
+	public List<Attraction> nearest(Location location, int k) {
+		if(k <= 0 || attractions.length == 0) {
+			return new ArrayList<>();
+		}
+		// max-heap on distance so the farthest of the current best k is evicted first
+		PriorityQueue<Candidate> best = new PriorityQueue<>(k, (c1, c2) -> Double.compare(c2.distance, c1.distance));
+		GeoPoint point = GeoPoint.of(location);
+		int queryRow = rowOf(location.latitude);
+		int north = queryRow;
+		int south = queryRow - 1;
+		while(north < ROWS || south >= 0) {
+			double northBound = north < ROWS ? rowLowerBound(north, location.latitude) : Double.MAX_VALUE;
+			double southBound = south >= 0 ? rowLowerBound(south, location.latitude) : Double.MAX_VALUE;
+			int row;
+			double bound;
+			if(northBound <= southBound) {
+				row = north++;
+				bound = northBound;
+			} else {
+				row = south--;
+				bound = southBound;
+			}
+			if(best.size() == k && bound > best.peek().distance) {
+				break;
+			}
+			for(int i = 0; i < rows[row].length; i++) {
+				double distance = distanceMode.distanceMiles(rowPoints[row][i], point);
+				if(best.size() < k) {
+					best.add(new Candidate(rows[row][i], distance));
+				} else if(distance < best.peek().distance) {
+					best.poll();
+					best.add(new Candidate(rows[row][i], distance));
+				}
+			}
+		}
+
+		List<Candidate> ordered = new ArrayList<>(best);
+		ordered.sort(Comparator.comparingDouble(c -> c.distance));
+		List<Attraction> result = new ArrayList<>(ordered.size());
+		for(Candidate candidate : ordered) {
+			result.add(candidate.attraction);
+		}
+		return result;
+	}
+
+	private void collectRange(List<Attraction> result, int row, double fromLongitude, double toLongitude, GeoPoint point, double miles) {
+		double[] longitudes = rowLongitudes[row];
+		for(int i = lowerBound(longitudes, fromLongitude); i < longitudes.length && longitudes[i] <= toLongitude; i++) {
+			addIfWithin(result, rows[row][i], rowPoints[row][i], point, miles);
+		}
+	}
+
+	private void addIfWithin(List<Attraction> result, Attraction attraction, GeoPoint attractionPoint, GeoPoint point, double miles) {
+		if(distanceMode.isWithin(attractionPoint, point, miles)) {
+			result.add(attraction);
+		}
+	}
+
+	/**
+	 * Half-width in degrees of longitude of a spherical cap, or 180 when the cap covers a pole.
+	 */
+	private static double longitudeRadius(double latitude, double radiusDegrees) {
+		if(Math.abs(latitude) + radiusDegrees >= 90) {
+			return 180;
+		}
+		double ratio = Math.sin(Math.toRadians(radiusDegrees)) / Math.cos(Math.toRadians(latitude));
+		// pad by a hair so rounding never drops an attraction sitting on the edge of the cap
+		return ratio >= 1 ? 180 : Math.toDegrees(Math.asin(ratio)) + 1e-9;
+	}
+
+	/**
+	 * Latitude difference alone is a lower bound on great circle distance.
+	 */
+	private static double rowLowerBound(int row, double latitude) {
+		double rowSouth = row - 90;
+		double rowNorth = rowSouth + 1;
+		double degrees = latitude < rowSouth ? rowSouth - latitude : latitude > rowNorth ? latitude - rowNorth : 0;
+		return degrees * GeoMath.STATUTE_MILES_PER_DEGREE;
+	}
+
+	private static int rowOf(double latitude) {
+		int row = (int) Math.floor(latitude + 90);
+		return Math.max(0, Math.min(ROWS - 1, row));
+	}
+
+	private static int lowerBound(double[] values, double key) {
+		int low = 0;
+		int high = values.length;
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(values[mid] < key) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private static class Candidate {
+		final Attraction attraction;
+		final double distance;
+
+		Candidate(Attraction attraction, double distance) {
+			this.attraction = attraction;
+			this.distance = distance;
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package tourGuide.geo;
+
+/**
+ * Distance kernels in statute miles, from exact to cheap.
+ * <p>
+ * Proximity checks skip the kernel for most pairs: two points are within a radius exactly when the dot product of
+ * their unit vectors is at least the cosine of that radius, so only pairs whose dot product lands in a thin band
+ * around the threshold are measured with the kernel itself.
+ */
+public enum DistanceMode {
+
+	/**
+	 * Spherical law of cosines, same result as {@link GeoMath#distanceMiles(double, double, double, double)}.
+	 */
+	LAW_OF_COSINES {
+		@Override
+		double angle(GeoPoint p1, GeoPoint p2) {
+			double cosAngle = p1.sinLatitude * p2.sinLatitude
+					+ p1.cosLatitude * p2.cosLatitude * Math.cos(p1.longitudeRadians - p2.longitudeRadians);
+			return Math.acos(Math.max(-1, Math.min(1, cosAngle)));
+		}
+	},
+
+	/**
+	 * Haversine formula, better conditioned than the law of cosines for points a few metres apart.
+	 */
+	HAVERSINE {
+		@Override
+		double angle(GeoPoint p1, GeoPoint p2) {
+			double sinHalfLatitude = Math.sin((p2.latitudeRadians - p1.latitudeRadians) / 2);
+			double sinHalfLongitude = Math.sin((p2.longitudeRadians - p1.longitudeRadians) / 2);
+			double a = sinHalfLatitude * sinHalfLatitude
+					+ p1.cosLatitude * p2.cosLatitude * sinHalfLongitude * sinHalfLongitude;
+			return 2 * Math.asin(Math.sqrt(Math.min(1, a)));
+		}
+	},
+
+	/**
+	 * Equirectangular projection: one cosine and a square root, accurate to well under a percent over the few
+	 * hundred miles proximity checks deal with, but increasingly off over continental distances and near the poles.
+	 */
+	EQUIRECTANGULAR {
+		@Override
+		double angle(GeoPoint p1, GeoPoint p2) {
+			return Math.sqrt(squaredAngle(p1, p2));
+		}
+
+		@Override
+		public boolean isWithin(GeoPoint p1, GeoPoint p2, double miles) {
+			if(Math.abs(p1.latitude - p2.latitude) * GeoMath.STATUTE_MILES_PER_DEGREE > miles) {
+				return false;
+			}
+			double radius = miles / GeoMath.STATUTE_MILES_PER_RADIAN;
+			double squaredRadius = radius * radius;
+			double squaredAngle = squaredAngle(p1, p2);
+			if(Math.abs(squaredAngle - squaredRadius) > squaredRadius * thresholdBand) {
+				return squaredAngle < squaredRadius;
+			}
+			return distanceMiles(p1, p2) <= miles;
+		}
+	};
+
+	// dot products are good to ~1e-16, so outside this band the comparison with the threshold cannot be wrong
+	private static final double thresholdBand = 1e-9;
+
+	abstract double angle(GeoPoint p1, GeoPoint p2);
+
+	public double distanceMiles(GeoPoint p1, GeoPoint p2) {
+		return 60 * Math.toDegrees(angle(p1, p2)) * GeoMath.STATUTE_MILES_PER_NAUTICAL_MILE;
+	}
+
+	/**
+	 * Same answer as comparing {@link #distanceMiles(GeoPoint, GeoPoint)} with the radius, without computing it
+	 * unless the pair sits right at the threshold.
+	 */
+	public boolean isWithin(GeoPoint p1, GeoPoint p2, double miles) {
+		double radius = miles / GeoMath.STATUTE_MILES_PER_RADIAN;
+		if(radius >= Math.PI) {
+			return true;
+		}
+		// cheap bounding box on latitude first: the arc is never shorter than the latitude difference
+		if(Math.abs(p1.latitude - p2.latitude) * GeoMath.STATUTE_MILES_PER_DEGREE > miles) {
+			return false;
+		}
+		double cosRadius = Math.cos(radius);
+		double dot = p1.dot(p2);
+		if(dot < cosRadius - thresholdBand) {
+			return false;
+		}
+		if(dot > cosRadius + thresholdBand) {
+			return true;
+		}
+		return distanceMiles(p1, p2) <= miles;
+	}
+
+	private static double squaredAngle(GeoPoint p1, GeoPoint p2) {
+		double longitudeDelta = p2.longitudeRadians - p1.longitudeRadians;
+		// take the short way round across the antimeridian
+		if(longitudeDelta > Math.PI) {
+			longitudeDelta -= 2 * Math.PI;
+		} else if(longitudeDelta < -Math.PI) {
+			longitudeDelta += 2 * Math.PI;
+		}
+		double x = longitudeDelta * Math.cos((p1.latitudeRadians + p2.latitudeRadians) / 2);
+		double y = p2.latitudeRadians - p1.latitudeRadians;
+		return x * x + y * y;
+	}
+}
@@ -0,0 +1,35 @@
+package tourGuide.geo;
+
+import gpsUtil.location.Location;
+
+public final class GeoMath {
+	public static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
+	// one degree of great circle arc is 60 nautical miles
+	public static final double STATUTE_MILES_PER_DEGREE = 60 * STATUTE_MILES_PER_NAUTICAL_MILE;
+	public static final double STATUTE_MILES_PER_RADIAN = STATUTE_MILES_PER_DEGREE * 180 / Math.PI;
+
+	private GeoMath() {
+	}
+
+	/**
+	 * Great circle distance in statute miles, using the spherical law of cosines.
+	 */
+	public static double distanceMiles(Location loc1, Location loc2) {
+		return distanceMiles(loc1.latitude, loc1.longitude, loc2.latitude, loc2.longitude);
+	}
+
+	public static double distanceMiles(double latitude1, double longitude1, double latitude2, double longitude2) {
+		double lat1 = Math.toRadians(latitude1);
+		double lon1 = Math.toRadians(longitude1);
+		double lat2 = Math.toRadians(latitude2);
+		double lon2 = Math.toRadians(longitude2);
+
+		double cosAngle = Math.sin(lat1) * Math.sin(lat2)
+				+ Math.cos(lat1) * Math.cos(lat2) * Math.cos(lon1 - lon2);
+		// rounding can push identical points just past 1, which acos turns into NaN
+		double angle = Math.acos(Math.max(-1, Math.min(1, cosAngle)));
+
+		double nauticalMiles = 60 * Math.toDegrees(angle);
+		return STATUTE_MILES_PER_NAUTICAL_MILE * nauticalMiles;
+	}
+}
@@ -0,0 +1,43 @@
+package tourGuide.geo;
+
+import gpsUtil.location.Location;
+
+/**
+ * A location with its trigonometric terms computed once, for points that are measured against many times.
+ */
+public final class GeoPoint {
+	public final double latitude;
+	public final double longitude;
+	final double latitudeRadians;
+	final double longitudeRadians;
+	final double sinLatitude;
+	final double cosLatitude;
+	// unit vector: the dot product of two of them is the cosine of the angle between the points
+	final double x;
+	final double y;
+	final double z;
+
+	private GeoPoint(double latitude, double longitude) {
+		this.latitude = latitude;
+		this.longitude = longitude;
+		latitudeRadians = Math.toRadians(latitude);
+		longitudeRadians = Math.toRadians(longitude);
+		sinLatitude = Math.sin(latitudeRadians);
+		cosLatitude = Math.cos(latitudeRadians);
+		x = cosLatitude * Math.cos(longitudeRadians);
+		y = cosLatitude * Math.sin(longitudeRadians);
+		z = sinLatitude;
+	}
+
+	public static GeoPoint of(Location location) {
+		return new GeoPoint(location.latitude, location.longitude);
+	}
+
+	public static GeoPoint of(double latitude, double longitude) {
+		return new GeoPoint(latitude, longitude);
+	}
+
+	double dot(GeoPoint other) {
+		return x * other.x + y * other.y + z * other.z;
+	}
+}
@@ -4,6 +4,8 @@ public class InternalTestHelper {
 
 	// Set this default up to 100,000 for testing
 	private static int internalUserNumber = 100;
+	// Set a seed to generate the same users, ids included, on every run
+	private static Long internalUserSeed;
 	
 	public static void setInternalUserNumber(int internalUserNumber) {
 		InternalTestHelper.internalUserNumber = internalUserNumber;
@@ -12,4 +14,12 @@ public class InternalTestHelper {
 	public static int getInternalUserNumber() {
 		return internalUserNumber;
 	}
+	
+	public static void setInternalUserSeed(Long internalUserSeed) {
+		InternalTestHelper.internalUserSeed = internalUserSeed;
+	}
+	
+	public static Long getInternalUserSeed() {
+		return internalUserSeed;
+	}
 }
@@ -0,0 +1,54 @@
+package tourGuide.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import com.jsoniter.output.JsonStream;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import tourGuide.user.User;
+
+/**
+ * Streams a userId to last known location JSON object straight to an output stream, one user at a time,
+ * so memory use stays at one write buffer however many users there are.
+ */
+public class CurrentLocationsWriter {
+	private static final int bufferSize = 8192;
+
+	/**
+	 * Writes the users that have a stored location; users never tracked are left out.
+	 *
+	 * @return the number of locations written
+	 */
+	public static int write(List<User> users, OutputStream out) throws IOException {
+		JsonStream stream = new JsonStream(out, bufferSize);
+		int written = 0;
+		stream.writeObjectStart();
+		for(User user : users) {
+			VisitedLocation visitedLocation = user.getLastVisitedLocation();
+			if(visitedLocation == null) {
+				continue;
+			}
+			if(written++ > 0) {
+				stream.writeMore();
+			}
+			stream.writeObjectField(user.getUserId().toString());
+			writeLocation(stream, visitedLocation.location);
+		}
+		stream.writeObjectEnd();
+		stream.flush();
+		return written;
+	}
+
+	private static void writeLocation(JsonStream stream, Location location) throws IOException {
+		stream.writeObjectStart();
+		stream.writeObjectField("longitude");
+		stream.writeVal(location.longitude);
+		stream.writeMore();
+		stream.writeObjectField("latitude");
+		stream.writeVal(location.latitude);
+		stream.writeObjectEnd();
+	}
+}
@@ -0,0 +1,63 @@
+package tourGuide.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import com.jsoniter.output.JsonStream;
+
+import tourGuide.dto.NearbyAttraction;
+
+/**
+ * Writes the nearby attractions field by field instead of going through jsoniter's reflective encoders.
+ */
+public class NearbyAttractionsWriter {
+	private static final int bufferSize = 1024;
+
+	public static String toJson(List<NearbyAttraction> nearbyAttractions) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(bufferSize);
+		try {
+			JsonStream stream = new JsonStream(out, bufferSize);
+			stream.writeArrayStart();
+			for(int i = 0; i < nearbyAttractions.size(); i++) {
+				if(i > 0) {
+					stream.writeMore();
+				}
+				write(stream, nearbyAttractions.get(i));
+			}
+			stream.writeArrayEnd();
+			stream.flush();
+		} catch(IOException e) {
+			// cannot happen on an in-memory stream
+			throw new UncheckedIOException(e);
+		}
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private static void write(JsonStream stream, NearbyAttraction nearbyAttraction) throws IOException {
+		stream.writeObjectStart();
+		stream.writeObjectField("attractionName");
+		stream.writeVal(nearbyAttraction.attractionName);
+		stream.writeMore();
+		stream.writeObjectField("attractionLatitude");
+		stream.writeVal(nearbyAttraction.attractionLatitude);
+		stream.writeMore();
+		stream.writeObjectField("attractionLongitude");
+		stream.writeVal(nearbyAttraction.attractionLongitude);
+		stream.writeMore();
+		stream.writeObjectField("userLatitude");
+		stream.writeVal(nearbyAttraction.userLatitude);
+		stream.writeMore();
+		stream.writeObjectField("userLongitude");
+		stream.writeVal(nearbyAttraction.userLongitude);
+		stream.writeMore();
+		stream.writeObjectField("distance");
+		stream.writeVal(nearbyAttraction.distance);
+		stream.writeMore();
+		stream.writeObjectField("rewardPoints");
+		stream.writeVal(nearbyAttraction.rewardPoints);
+		stream.writeObjectEnd();
+	}
+}
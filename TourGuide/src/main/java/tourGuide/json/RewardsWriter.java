@@ -0,0 +1,88 @@
+package tourGuide.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import com.jsoniter.output.JsonStream;
+
+import gpsUtil.location.Attraction;
+import tourGuide.user.UserReward;
+
+/**
+ * Writes rewards in the shape of gpsUtil's VisitedLocation and Attraction straight from the compact
+ * {@link UserReward} fields. The visit time is written as epoch milliseconds; jsoniter's reflective encoders cannot
+ * reach into java.util.Date on Java 17 and later.
+ */
+public class RewardsWriter {
+	private static final int bufferSize = 1024;
+
+	public static String toJson(List<UserReward> userRewards) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(bufferSize);
+		try {
+			JsonStream stream = new JsonStream(out, bufferSize);
+			stream.writeArrayStart();
+			for(int i = 0; i < userRewards.size(); i++) {
+				if(i > 0) {
+					stream.writeMore();
+				}
+				write(stream, userRewards.get(i));
+			}
+			stream.writeArrayEnd();
+			stream.flush();
+		} catch(IOException e) {
+			// cannot happen on an in-memory stream
+			throw new UncheckedIOException(e);
+		}
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private static void write(JsonStream stream, UserReward userReward) throws IOException {
+		stream.writeObjectStart();
+		stream.writeObjectField("visitedLocation");
+		stream.writeObjectStart();
+		stream.writeObjectField("userId");
+		stream.writeVal(userReward.getUserId().toString());
+		stream.writeMore();
+		stream.writeObjectField("location");
+		stream.writeObjectStart();
+		stream.writeObjectField("longitude");
+		stream.writeVal(userReward.getVisitedLongitude());
+		stream.writeMore();
+		stream.writeObjectField("latitude");
+		stream.writeVal(userReward.getVisitedLatitude());
+		stream.writeObjectEnd();
+		stream.writeMore();
+		stream.writeObjectField("timeVisited");
+		stream.writeVal(userReward.getVisitedTime());
+		stream.writeObjectEnd();
+		stream.writeMore();
+		Attraction attraction = userReward.getAttraction();
+		stream.writeObjectField("attraction");
+		stream.writeObjectStart();
+		stream.writeObjectField("attractionName");
+		stream.writeVal(attraction.attractionName);
+		stream.writeMore();
+		stream.writeObjectField("city");
+		stream.writeVal(attraction.city);
+		stream.writeMore();
+		stream.writeObjectField("state");
+		stream.writeVal(attraction.state);
+		stream.writeMore();
+		stream.writeObjectField("attractionId");
+		stream.writeVal(attraction.attractionId.toString());
+		stream.writeMore();
+		stream.writeObjectField("longitude");
+		stream.writeVal(attraction.longitude);
+		stream.writeMore();
+		stream.writeObjectField("latitude");
+		stream.writeVal(attraction.latitude);
+		stream.writeObjectEnd();
+		stream.writeMore();
+		stream.writeObjectField("rewardPoints");
+		stream.writeVal(userReward.getRewardPoints());
+		stream.writeObjectEnd();
+	}
+}
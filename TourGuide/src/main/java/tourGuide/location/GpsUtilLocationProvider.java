@@ -0,0 +1,98 @@
+package tourGuide.location;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+import io.micrometer.core.instrument.Timer;
+import tourGuide.execution.ExecutionMode;
+import tourGuide.metrics.TourGuideMetrics;
+import tourGuide.resilience.UpstreamGuard;
+import tourGuide.resilience.UpstreamUnavailableException;
+
+/**
+ * Default {@link LocationProvider} over gpsUtil. Batch lookups fan out over a pool of their own, since each
+ * gpsUtil call blocks for tens of milliseconds. Every gpsUtil call goes through the provider's {@link UpstreamGuard},
+ * which reports a failed or refused lookup as an {@link UpstreamUnavailableException}.
+ */
+public class GpsUtilLocationProvider implements LocationProvider {
+	private Logger logger = LoggerFactory.getLogger(GpsUtilLocationProvider.class);
+	public static final int defaultBatchPoolSize = 100;
+	// gpsUtil answers within 100ms
+	private static final long maxWaitMillis = 5000;
+	private static final long timeoutMillis = 1000;
+	private final GpsUtil gpsUtil;
+	private final ExecutorService batchExecutor;
+	private final UpstreamGuard gpsUtilGuard;
+	private final Timer userLocationTimer = TourGuideMetrics.externalCall("gpsUtil", "getUserLocation");
+	private final Timer attractionsTimer = TourGuideMetrics.externalCall("gpsUtil", "getAttractions");
+
+	public GpsUtilLocationProvider(GpsUtil gpsUtil) {
+		this(gpsUtil, defaultBatchPoolSize);
+	}
+
+	public GpsUtilLocationProvider(GpsUtil gpsUtil, int batchPoolSize) {
+		this(gpsUtil, batchPoolSize, ExecutionMode.PLATFORM);
+	}
+
+	public GpsUtilLocationProvider(GpsUtil gpsUtil, int batchPoolSize, ExecutionMode executionMode) {
+		this(gpsUtil, batchPoolSize, executionMode, 0);
+	}
+
+	/**
+	 * @param maxCallsPerSecond the rate gpsUtil is called at most, or 0 for no rate limit
+	 */
+	public GpsUtilLocationProvider(GpsUtil gpsUtil, int batchPoolSize, ExecutionMode executionMode, double maxCallsPerSecond) {
+		this.gpsUtil = gpsUtil;
+		this.batchExecutor = executionMode.newExecutor("gps-batch", batchPoolSize);
+		this.gpsUtilGuard = new UpstreamGuard("gpsUtil", executionMode, batchPoolSize, maxCallsPerSecond, maxWaitMillis, timeoutMillis);
+	}
+
+	@Override
+	public VisitedLocation getUserLocation(UUID userId) {
+		return gpsUtilGuard.call(() -> userLocationTimer.record(() -> gpsUtil.getUserLocation(userId)));
+	}
+
+	@Override
+	public Map<UUID, VisitedLocation> getUserLocations(Collection<UUID> userIds) {
+		Map<UUID, CompletableFuture<VisitedLocation>> lookups = new HashMap<>();
+		for(UUID userId : userIds) {
+			lookups.put(userId, CompletableFuture.supplyAsync(() -> getUserLocation(userId), batchExecutor));
+		}
+		Map<UUID, VisitedLocation> visitedLocations = new HashMap<>();
+		lookups.forEach((userId, lookup) -> {
+			try {
+				visitedLocations.put(userId, lookup.join());
+			} catch (CompletionException e) {
+				if(e.getCause() instanceof UpstreamUnavailableException) {
+					logger.debug("No location for user " + userId + ": " + e.getCause().getMessage());
+				} else {
+					logger.error("Failed to look up the location of user " + userId, e.getCause());
+				}
+			}
+		});
+		return visitedLocations;
+	}
+
+	@Override
+	public List<Attraction> getAttractions() {
+		return attractionsTimer.record(() -> gpsUtil.getAttractions());
+	}
+
+	@Override
+	public List<UpstreamGuard> getUpstreamGuards() {
+		return Collections.singletonList(gpsUtilGuard);
+	}
+}
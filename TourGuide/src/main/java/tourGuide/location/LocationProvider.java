@@ -0,0 +1,35 @@
+package tourGuide.location;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+import tourGuide.resilience.UpstreamGuard;
+
+/**
+ * Source of users' current locations and of the attraction list.
+ */
+public interface LocationProvider {
+
+	/**
+	 * @throws tourGuide.resilience.UpstreamUnavailableException when the upstream cannot answer right now, so
+	 * callers can fall back on the last known location
+	 */
+	VisitedLocation getUserLocation(UUID userId);
+
+	/**
+	 * Looks up several users at once and returns once all lookups are done. Users whose lookup failed are left out.
+	 */
+	Map<UUID, VisitedLocation> getUserLocations(Collection<UUID> userIds);
+
+	List<Attraction> getAttractions();
+
+	/**
+	 * @return the guards between this provider and its upstream service, so their state can be published and they
+	 * can be shut down; empty when there is no upstream to protect
+	 */
+	List<UpstreamGuard> getUpstreamGuards();
+}
@@ -0,0 +1,79 @@
+package tourGuide.location;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import tourGuide.resilience.UpstreamGuard;
+
+/**
+ * In-process {@link LocationProvider} for load testing without the real gpsUtil delays and rate limit.
+ * Every lookup waits a fixed latency plus a random jitter; a batch waits once for the whole batch. Lookups are
+ * not guarded or rate limited, so load tests measure the code rather than a token bucket.
+ */
+public class SimulatedLocationProvider implements LocationProvider {
+	private final List<Attraction> attractions;
+	private final long latencyNanos;
+	private final long jitterNanos;
+
+	public SimulatedLocationProvider(long latency, long jitter, TimeUnit unit) {
+		this(new GpsUtil().getAttractions(), latency, jitter, unit);
+	}
+
+	public SimulatedLocationProvider(List<Attraction> attractions, long latency, long jitter, TimeUnit unit) {
+		this.attractions = Collections.unmodifiableList(new ArrayList<>(attractions));
+		this.latencyNanos = unit.toNanos(latency);
+		this.jitterNanos = unit.toNanos(jitter);
+	}
+
+	@Override
+	public VisitedLocation getUserLocation(UUID userId) {
+		simulateLatency();
+		return randomVisitedLocation(userId);
+	}
+
+	@Override
+	public Map<UUID, VisitedLocation> getUserLocations(Collection<UUID> userIds) {
+		simulateLatency();
+		Map<UUID, VisitedLocation> visitedLocations = new HashMap<>();
+		for(UUID userId : userIds) {
+			visitedLocations.put(userId, randomVisitedLocation(userId));
+		}
+		return visitedLocations;
+	}
+
+	@Override
+	public List<Attraction> getAttractions() {
+		return attractions;
+	}
+
+	@Override
+	public List<UpstreamGuard> getUpstreamGuards() {
+		return Collections.emptyList();
+	}
+
+	private void simulateLatency() {
+		long nanos = latencyNanos + (jitterNanos > 0 ? ThreadLocalRandom.current().nextLong(jitterNanos) : 0);
+		if(nanos > 0) {
+			LockSupport.parkNanos(nanos);
+		}
+	}
+
+	private static VisitedLocation randomVisitedLocation(UUID userId) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		Location location = new Location(random.nextDouble(-85.05112878, 85.05112878), random.nextDouble(-180, 180));
+		return new VisitedLocation(userId, location, new Date());
+	}
+}
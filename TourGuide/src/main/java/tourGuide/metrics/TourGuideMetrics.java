@@ -0,0 +1,48 @@
+package tourGuide.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Meters recorded by the services themselves. They are registered in Micrometer's global registry, which Spring
+ * Boot adds the actuator's registry to; outside the application, e.g. in unit tests, recording them does nothing.
+ */
+public final class TourGuideMetrics {
+
+	private TourGuideMetrics() {
+	}
+
+	/**
+	 * @return a timer publishing p50, p95 and p99 along with histogram buckets, so percentiles can also be
+	 * aggregated across instances
+	 */
+	public static Timer latency(String name, String... tags) {
+		return Timer.builder(name)
+				.tags(tags)
+				.publishPercentiles(0.5, 0.95, 0.99)
+				.publishPercentileHistogram()
+				.register(Metrics.globalRegistry);
+	}
+
+	/**
+	 * @return a timer for calls to one of the external libraries, tagged with the library and the operation
+	 */
+	public static Timer externalCall(String service, String operation) {
+		return latency("tourguide.external.calls", "service", service, "operation", operation);
+	}
+
+	public static Counter counter(String name, String... tags) {
+		return Counter.builder(name)
+				.tags(tags)
+				.register(Metrics.globalRegistry);
+	}
+
+	public static DistributionSummary summary(String name, String... tags) {
+		return DistributionSummary.builder(name)
+				.tags(tags)
+				.publishPercentiles(0.5, 0.95, 0.99)
+				.register(Metrics.globalRegistry);
+	}
+}
@@ -0,0 +1,281 @@
+package tourGuide.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.time.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gpsUtil.location.VisitedLocation;
+import tourGuide.helper.DaemonThreadFactory;
+import tourGuide.repository.InMemoryUserRepository;
+import tourGuide.repository.UserRepository;
+import tourGuide.user.User;
+import tourGuide.user.UserChangeListener;
+import tourGuide.user.UserReward;
+
+/**
+ * {@link UserRepository} that survives restarts by appending every user, visited location and reward to a
+ * {@link SegmentLog} in a local directory. Users are still served from memory.
+ * <p>
+ * Startup maps the current generation's segments one at a time and decodes the records straight from the mapped
+ * files; each user's visited locations are collected as plain numbers and handed to its history in one go.
+ * Compaction writes each user's current state into the next generation, then switches the CURRENT file over to it
+ * and deletes the old segments; it runs in the background once the log has grown to twice its last compacted size.
+ * While it runs, changes to a user already copied over are written to both generations, so whichever generation
+ * CURRENT names after a crash is complete.
+ */
+public class PersistentUserRepository implements UserRepository, UserChangeListener, Closeable {
+	private Logger logger = LoggerFactory.getLogger(PersistentUserRepository.class);
+	public static final int defaultSegmentSize = 64 * 1024 * 1024;
+	private static final long flushIntervalSeconds = 5;
+	private static final long compactionCheckIntervalSeconds = 60;
+	private static final long minCompactionBytes = 16 * 1024 * 1024;
+	private static final String CURRENT_FILE = "CURRENT";
+
+	private final Path directory;
+	private final int segmentSize;
+	private final InMemoryUserRepository users = new InMemoryUserRepository();
+	private final Object logLock = new Object();
+	private final Object compactionLock = new Object();
+	private final Set<User> compactedUsers = Collections.newSetFromMap(new ConcurrentHashMap<>());
+	private final ScheduledExecutorService maintenance;
+	private volatile SegmentLog log;
+	private volatile SegmentLog compactingLog;
+	private volatile long compactedSize;
+
+	private PersistentUserRepository(Path directory, int segmentSize) {
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.maintenance = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("user-store"));
+	}
+
+	public static PersistentUserRepository open(Path directory) throws IOException {
+		return open(directory, defaultSegmentSize);
+	}
+
+	/**
+	 * Loads the users stored in the directory, creating it if needed, and starts the background flush and
+	 * compaction.
+	 */
+	public static PersistentUserRepository open(Path directory, int segmentSize) throws IOException {
+		Files.createDirectories(directory);
+		PersistentUserRepository repository = new PersistentUserRepository(directory, segmentSize);
+		repository.load();
+		repository.maintenance.scheduleWithFixedDelay(repository::flush,
+				flushIntervalSeconds, flushIntervalSeconds, TimeUnit.SECONDS);
+		repository.maintenance.scheduleWithFixedDelay(repository::compactIfGrown,
+				compactionCheckIntervalSeconds, compactionCheckIntervalSeconds, TimeUnit.SECONDS);
+		return repository;
+	}
+
+	@Override
+	public User getUser(String userName) {
+		return users.getUser(userName);
+	}
+
+	@Override
+	public List<User> getAllUsers() {
+		return users.getAllUsers();
+	}
+
+	@Override
+	public List<User> getUsersAfter(UUID after, int limit) {
+		return users.getUsersAfter(after, limit);
+	}
+
+	@Override
+	public boolean addUser(User user) {
+		synchronized(user) {
+			if(!users.addUser(user)) {
+				return false;
+			}
+			synchronized(logLock) {
+				writeUser(log, user);
+				if(compactingLog != null) {
+					writeUser(compactingLog, user);
+					compactedUsers.add(user);
+				}
+			}
+			user.setChangeListener(this);
+			return true;
+		}
+	}
+
+	@Override
+	public int size() {
+		return users.size();
+	}
+
+	@Override
+	public void visitedLocationAdded(User user, VisitedLocation visitedLocation) {
+		append(user, UserRecords.visitedLocation(user.getUserId(), visitedLocation));
+	}
+
+	@Override
+	public void visitedLocationsCleared(User user) {
+		append(user, UserRecords.visitedLocationsCleared(user.getUserId()));
+	}
+
+	@Override
+	public void userRewardAdded(User user, UserReward userReward) {
+		append(user, UserRecords.userReward(user.getUserId(), userReward));
+	}
+
+	/**
+	 * Rewrites the log down to the users' current state.
+	 */
+	public void compact() throws IOException {
+		synchronized(compactionLock) {
+			StopWatch stopWatch = new StopWatch();
+			stopWatch.start();
+			SegmentLog next = SegmentLog.open(directory, log.getGeneration() + 1, segmentSize, record -> {});
+			synchronized(logLock) {
+				compactingLog = next;
+			}
+			try {
+				for(User user : users.getAllUsers()) {
+					// holding the user's lock keeps its changes from slipping in between the copy and the marking
+					synchronized(user) {
+						if(compactedUsers.add(user)) {
+							writeUser(next, user);
+						}
+					}
+				}
+				next.force();
+				writeCurrentGeneration(next.getGeneration());
+			} catch (IOException | RuntimeException e) {
+				synchronized(logLock) {
+					compactingLog = null;
+					compactedUsers.clear();
+				}
+				throw e;
+			}
+			SegmentLog previous;
+			synchronized(logLock) {
+				previous = log;
+				log = next;
+				compactingLog = null;
+				compactedUsers.clear();
+			}
+			previous.close();
+			SegmentLog.deleteOtherGenerations(directory, next.getGeneration());
+			compactedSize = next.size();
+			stopWatch.stop();
+			logger.debug("Compacted user store to " + compactedSize + " bytes in " + stopWatch.getTime() + " ms.");
+		}
+	}
+
+	/**
+	 * @return bytes used by the current generation's segments
+	 */
+	public long getLogSize() {
+		return log.size();
+	}
+
+	@Override
+	public void close() {
+		maintenance.shutdownNow();
+		synchronized(compactionLock) {
+			synchronized(logLock) {
+				log.close();
+			}
+		}
+	}
+
+	private void load() throws IOException {
+		long generation = readCurrentGeneration();
+		SegmentLog.deleteOtherGenerations(directory, generation);
+		StopWatch stopWatch = new StopWatch();
+		stopWatch.start();
+		Map<UUID, UserLoader> loaded = new LinkedHashMap<>();
+		log = SegmentLog.open(directory, generation, segmentSize, record -> UserRecords.apply(record, loaded));
+		for(UserLoader loader : loaded.values()) {
+			User user = loader.build();
+			users.addUser(user);
+			user.setChangeListener(this);
+		}
+		compactedSize = log.size();
+		writeCurrentGeneration(generation);
+		stopWatch.stop();
+		logger.debug("Loaded " + loaded.size() + " users from " + directory + " in " + stopWatch.getTime() + " ms.");
+	}
+
+	private void append(User user, ByteBuffer record) {
+		synchronized(logLock) {
+			SegmentLog compacting = compactingLog;
+			if(compacting != null && compactedUsers.contains(user)) {
+				write(compacting, record.duplicate());
+			}
+			write(log, record);
+		}
+	}
+
+	private static void writeUser(SegmentLog target, User user) {
+		write(target, UserRecords.user(user));
+		for(VisitedLocation visitedLocation : user.getVisitedLocations()) {
+			write(target, UserRecords.visitedLocation(user.getUserId(), visitedLocation));
+		}
+		for(UserReward userReward : user.getUserRewards()) {
+			write(target, UserRecords.userReward(user.getUserId(), userReward));
+		}
+	}
+
+	private static void write(SegmentLog target, ByteBuffer record) {
+		try {
+			target.append(record);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void flush() {
+		try {
+			log.force();
+		} catch (RuntimeException e) {
+			logger.error("Failed to flush the user store", e);
+		}
+	}
+
+	private void compactIfGrown() {
+		if(log.size() < Math.max(minCompactionBytes, compactedSize * 2)) {
+			return;
+		}
+		try {
+			compact();
+		} catch (IOException | RuntimeException e) {
+			logger.error("Failed to compact the user store", e);
+		}
+	}
+
+	private long readCurrentGeneration() throws IOException {
+		Path current = directory.resolve(CURRENT_FILE);
+		if(!Files.exists(current)) {
+			return 0;
+		}
+		return Long.parseLong(new String(Files.readAllBytes(current), StandardCharsets.UTF_8).trim());
+	}
+
+	private void writeCurrentGeneration(long generation) throws IOException {
+		Path temporary = directory.resolve(CURRENT_FILE + ".tmp");
+		Files.write(temporary, Long.toString(generation).getBytes(StandardCharsets.UTF_8));
+		Files.move(temporary, directory.resolve(CURRENT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
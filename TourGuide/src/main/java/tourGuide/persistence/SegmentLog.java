@@ -0,0 +1,246 @@
+package tourGuide.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only record log over fixed-size, memory-mapped segment files, all belonging to one generation.
+ * <p>
+ * A segment starts with a magic number and format version, followed by records laid out as
+ * {@code [int length][int crc32][payload]}. A zero length marks the end of the written part, and a record whose
+ * checksum does not match (a write torn by a crash) ends it too. Appends go to the last segment until a record no
+ * longer fits, then a new segment is created.
+ * <p>
+ * Only the active segment stays mapped. Segments already read at startup, or filled up and rolled past, are unmapped
+ * right away rather than left for the garbage collector, which would otherwise keep every segment of a large log
+ * mapped until it happened to collect their buffers.
+ */
+class SegmentLog implements Closeable {
+	private static final int MAGIC = 0x54475331;
+	private static final int FORMAT_VERSION = 1;
+	private static final int SEGMENT_HEADER_SIZE = 8;
+	private static final int RECORD_HEADER_SIZE = 8;
+	private static final Pattern SEGMENT_FILE = Pattern.compile("segment-(\\d+)-(\\d+)\\.tgs");
+	private static final MethodHandle INVOKE_CLEANER = invokeCleaner();
+
+	private final Path directory;
+	private final long generation;
+	private final int segmentSize;
+	private final List<Path> segmentFiles = new ArrayList<>();
+	private MappedByteBuffer active;
+	private long closedSegmentsBytes;
+
+	private SegmentLog(Path directory, long generation, int segmentSize) {
+		this.directory = directory;
+		this.generation = generation;
+		this.segmentSize = segmentSize;
+	}
+
+	/**
+	 * Opens the generation's segments, handing every valid record's payload to the visitor in append order, and
+	 * positions the log after the last one. Creates a first segment when the generation has none.
+	 * <p>
+	 * The payload is a view straight into the mapped segment, reused for the next record and unmapped once the
+	 * segment has been read, so the visitor must copy out what it keeps.
+	 */
+	static SegmentLog open(Path directory, long generation, int segmentSize, Consumer<ByteBuffer> visitor) throws IOException {
+		SegmentLog log = new SegmentLog(directory, generation, segmentSize);
+		TreeMap<Integer, Path> segments = new TreeMap<>();
+		for(Path file : segmentFiles(directory)) {
+			Matcher matcher = SEGMENT_FILE.matcher(file.getFileName().toString());
+			if(matcher.matches() && Long.parseLong(matcher.group(1)) == generation) {
+				segments.put(Integer.parseInt(matcher.group(2)), file);
+			}
+		}
+		if(segments.isEmpty()) {
+			log.roll();
+			return log;
+		}
+		for(Path file : segments.values()) {
+			MappedByteBuffer segment = map(file, Math.max(segmentSize, (int) Files.size(file)));
+			if(segment.getInt(0) != MAGIC || segment.getInt(4) != FORMAT_VERSION) {
+				unmap(segment);
+				log.close();
+				throw new IOException("Not a segment file: " + file);
+			}
+			segment.position(SEGMENT_HEADER_SIZE);
+			replay(segment, visitor);
+			if(log.active != null) {
+				log.closedSegmentsBytes += log.active.position();
+				unmap(log.active);
+			}
+			log.segmentFiles.add(file);
+			log.active = segment;
+		}
+		return log;
+	}
+
+	/**
+	 * Deletes every segment file in the directory that does not belong to the given generation.
+	 */
+	static void deleteOtherGenerations(Path directory, long generation) throws IOException {
+		for(Path file : segmentFiles(directory)) {
+			Matcher matcher = SEGMENT_FILE.matcher(file.getFileName().toString());
+			if(matcher.matches() && Long.parseLong(matcher.group(1)) != generation) {
+				Files.deleteIfExists(file);
+			}
+		}
+	}
+
+	synchronized void append(ByteBuffer payload) throws IOException {
+		if(active == null) {
+			throw new IOException("Segment log is closed: " + directory);
+		}
+		int length = payload.remaining();
+		if(RECORD_HEADER_SIZE + length + 4 > segmentSize - SEGMENT_HEADER_SIZE) {
+			throw new IOException("Record of " + length + " bytes does not fit in a segment");
+		}
+		// room for the record plus the zero length that marks the end
+		if(active.remaining() < RECORD_HEADER_SIZE + length + 4) {
+			closedSegmentsBytes += active.position();
+			roll();
+		}
+		CRC32 crc = new CRC32();
+		crc.update(payload.duplicate());
+		int start = active.position();
+		active.position(start + RECORD_HEADER_SIZE);
+		active.put(payload);
+		active.putInt(active.position(), 0);
+		active.putInt(start + 4, (int) crc.getValue());
+		// the length goes last, so a reader never sees a length before the bytes it covers
+		active.putInt(start, length);
+	}
+
+	/**
+	 * @return bytes written across all segments, headers included
+	 */
+	synchronized long size() {
+		return closedSegmentsBytes + (active == null ? 0 : active.position());
+	}
+
+	long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Flushes the written part of the active segment to disk; earlier segments were flushed when they filled up.
+	 */
+	synchronized void force() {
+		if(active != null) {
+			active.force();
+		}
+	}
+
+	/**
+	 * Flushes and unmaps the active segment. The log cannot be appended to afterwards; a flush racing with the close
+	 * does nothing.
+	 */
+	@Override
+	public synchronized void close() {
+		if(active != null) {
+			active.force();
+			closedSegmentsBytes += active.position();
+			unmap(active);
+			active = null;
+		}
+	}
+
+	private void roll() throws IOException {
+		if(active != null) {
+			active.force();
+			unmap(active);
+			active = null;
+		}
+		Path file = directory.resolve(String.format("segment-%d-%06d.tgs", generation, segmentFiles.size()));
+		MappedByteBuffer segment = map(file, segmentSize);
+		segment.putInt(MAGIC);
+		segment.putInt(FORMAT_VERSION);
+		segment.putInt(segment.position(), 0);
+		segmentFiles.add(file);
+		active = segment;
+	}
+
+	private static void replay(MappedByteBuffer segment, Consumer<ByteBuffer> visitor) {
+		CRC32 crc = new CRC32();
+		// one view for every record of the segment, rather than a few buffer objects per record
+		ByteBuffer payload = segment.asReadOnlyBuffer();
+		while(segment.remaining() >= RECORD_HEADER_SIZE) {
+			int start = segment.position();
+			int length = segment.getInt(start);
+			if(length <= 0 || length > segment.limit() - start - RECORD_HEADER_SIZE) {
+				break;
+			}
+			payload.limit(start + RECORD_HEADER_SIZE + length).position(start + RECORD_HEADER_SIZE);
+			crc.reset();
+			crc.update(payload);
+			if((int) crc.getValue() != segment.getInt(start + 4)) {
+				break;
+			}
+			payload.position(start + RECORD_HEADER_SIZE);
+			visitor.accept(payload);
+			segment.position(start + RECORD_HEADER_SIZE + length);
+		}
+	}
+
+	private static MappedByteBuffer map(Path file, int size) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			// the mapping stays valid after the channel is closed
+			return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+	}
+
+	/**
+	 * Releases the mapping now instead of when the buffer is collected. The buffer must not be touched afterwards.
+	 * Java has no public way to do this, so it goes through sun.misc.Unsafe; where that is not available the mapping
+	 * is simply left to the garbage collector.
+	 */
+	private static void unmap(MappedByteBuffer buffer) {
+		if(INVOKE_CLEANER == null) {
+			return;
+		}
+		try {
+			INVOKE_CLEANER.invoke(buffer);
+		} catch (Throwable e) {
+			// left to the garbage collector
+		}
+	}
+
+	private static MethodHandle invokeCleaner() {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			return MethodHandles.lookup()
+				.findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+				.bindTo(theUnsafe.get(null));
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	private static List<Path> segmentFiles(Path directory) throws IOException {
+		List<Path> files = new ArrayList<>();
+		try(DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "segment-*.tgs")) {
+			stream.forEach(files::add);
+		}
+		return files;
+	}
+}
@@ -0,0 +1,50 @@
+package tourGuide.persistence;
+
+import java.util.Arrays;
+
+import tourGuide.user.User;
+import tourGuide.user.UserReward;
+
+/**
+ * One user being read back at startup. Visited locations are decoded from the mapped segments into primitive arrays
+ * and handed to the user's history in one go once every segment has been read, so no per-point objects are built and
+ * the retention policy runs once per user.
+ */
+final class UserLoader {
+	private static final int INITIAL_CAPACITY = 8;
+
+	private final User user;
+	private double[] latitudes = new double[INITIAL_CAPACITY];
+	private double[] longitudes = new double[INITIAL_CAPACITY];
+	private long[] times = new long[INITIAL_CAPACITY];
+	private int count = 0;
+
+	UserLoader(User user) {
+		this.user = user;
+	}
+
+	void addVisitedLocation(double latitude, double longitude, long time) {
+		if(count == latitudes.length) {
+			latitudes = Arrays.copyOf(latitudes, count * 2);
+			longitudes = Arrays.copyOf(longitudes, count * 2);
+			times = Arrays.copyOf(times, count * 2);
+		}
+		latitudes[count] = latitude;
+		longitudes[count] = longitude;
+		times[count] = time;
+		count++;
+	}
+
+	void clearVisitedLocations() {
+		count = 0;
+	}
+
+	void addUserReward(UserReward userReward) {
+		user.addUserReward(userReward);
+	}
+
+	User build() {
+		user.restoreVisitedLocations(latitudes, longitudes, times, count);
+		return user;
+	}
+}
@@ -0,0 +1,163 @@
+package tourGuide.persistence;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import tourGuide.user.User;
+import tourGuide.user.UserReward;
+
+/**
+ * Binary record payloads for users, visited locations and rewards. Every payload starts with a type byte and the
+ * user id; strings are an unsigned short byte length followed by UTF-8, with 0xFFFF standing for null.
+ * <p>
+ * Attraction ids are not stored: gpsUtil hands out new ones on every call, and rewards go by attraction name.
+ */
+final class UserRecords {
+	static final byte USER = 1;
+	static final byte VISITED_LOCATION = 2;
+	static final byte VISITED_LOCATIONS_CLEARED = 3;
+	static final byte USER_REWARD = 4;
+	private static final int NULL_STRING = 0xFFFF;
+
+	private UserRecords() {
+	}
+
+	static ByteBuffer user(User user) {
+		byte[] userName = bytes(user.getUserName());
+		byte[] phoneNumber = bytes(user.getPhoneNumber());
+		byte[] emailAddress = bytes(user.getEmailAddress());
+		ByteBuffer buffer = ByteBuffer.allocate(17 + stringSize(userName) + stringSize(phoneNumber) + stringSize(emailAddress));
+		putHeader(buffer, USER, user.getUserId());
+		putString(buffer, userName);
+		putString(buffer, phoneNumber);
+		putString(buffer, emailAddress);
+		buffer.flip();
+		return buffer;
+	}
+
+	static ByteBuffer visitedLocation(UUID userId, VisitedLocation visitedLocation) {
+		ByteBuffer buffer = ByteBuffer.allocate(17 + 24);
+		putHeader(buffer, VISITED_LOCATION, userId);
+		putVisitedLocation(buffer, visitedLocation);
+		buffer.flip();
+		return buffer;
+	}
+
+	static ByteBuffer visitedLocationsCleared(UUID userId) {
+		ByteBuffer buffer = ByteBuffer.allocate(17);
+		putHeader(buffer, VISITED_LOCATIONS_CLEARED, userId);
+		buffer.flip();
+		return buffer;
+	}
+
+	static ByteBuffer userReward(UUID userId, UserReward userReward) {
+		Attraction attraction = userReward.getAttraction();
+		byte[] name = bytes(attraction.attractionName);
+		byte[] city = bytes(attraction.city);
+		byte[] state = bytes(attraction.state);
+		ByteBuffer buffer = ByteBuffer.allocate(17 + stringSize(name) + stringSize(city) + stringSize(state) + 16 + 24 + 4);
+		putHeader(buffer, USER_REWARD, userId);
+		putString(buffer, name);
+		putString(buffer, city);
+		putString(buffer, state);
+		buffer.putDouble(attraction.latitude);
+		buffer.putDouble(attraction.longitude);
+		buffer.putDouble(userReward.getVisitedLatitude());
+		buffer.putDouble(userReward.getVisitedLongitude());
+		buffer.putLong(userReward.getVisitedTime());
+		buffer.putInt(userReward.getRewardPoints());
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Applies a record to the users read so far, creating the user on its {@link #USER} record. Visited locations are
+	 * read as plain numbers; nothing is kept that points into the record.
+	 */
+	static void apply(ByteBuffer record, Map<UUID, UserLoader> users) {
+		byte type = record.get();
+		UUID userId = new UUID(record.getLong(), record.getLong());
+		if(type == USER) {
+			users.put(userId, new UserLoader(new User(userId, getString(record), getString(record), getString(record))));
+			return;
+		}
+		UserLoader user = users.get(userId);
+		if(user == null) {
+			return;
+		}
+		switch(type) {
+		case VISITED_LOCATION:
+			user.addVisitedLocation(record.getDouble(), record.getDouble(), record.getLong());
+			break;
+		case VISITED_LOCATIONS_CLEARED:
+			user.clearVisitedLocations();
+			break;
+		case USER_REWARD:
+			String name = getString(record);
+			String city = getString(record);
+			String state = getString(record);
+			double latitude = record.getDouble();
+			double longitude = record.getDouble();
+			Attraction attraction = new Attraction(name, city, state, latitude, longitude);
+			user.addUserReward(new UserReward(getVisitedLocation(record, userId), attraction, record.getInt()));
+			break;
+		default:
+			// records from a newer format are skipped rather than failing the whole load
+			break;
+		}
+	}
+
+	private static void putHeader(ByteBuffer buffer, byte type, UUID userId) {
+		buffer.put(type);
+		buffer.putLong(userId.getMostSignificantBits());
+		buffer.putLong(userId.getLeastSignificantBits());
+	}
+
+	private static void putVisitedLocation(ByteBuffer buffer, VisitedLocation visitedLocation) {
+		buffer.putDouble(visitedLocation.location.latitude);
+		buffer.putDouble(visitedLocation.location.longitude);
+		buffer.putLong(visitedLocation.timeVisited.getTime());
+	}
+
+	private static VisitedLocation getVisitedLocation(ByteBuffer buffer, UUID userId) {
+		double latitude = buffer.getDouble();
+		double longitude = buffer.getDouble();
+		return new VisitedLocation(userId, new Location(latitude, longitude), new Date(buffer.getLong()));
+	}
+
+	private static byte[] bytes(String value) {
+		return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static int stringSize(byte[] value) {
+		return 2 + (value == null ? 0 : value.length);
+	}
+
+	private static void putString(ByteBuffer buffer, byte[] value) {
+		if(value == null) {
+			buffer.putShort((short) NULL_STRING);
+			return;
+		}
+		if(value.length >= NULL_STRING) {
+			throw new IllegalArgumentException("String of " + value.length + " bytes is too long to store");
+		}
+		buffer.putShort((short) value.length);
+		buffer.put(value);
+	}
+
+	private static String getString(ByteBuffer buffer) {
+		int length = buffer.getShort() & 0xFFFF;
+		if(length == NULL_STRING) {
+			return null;
+		}
+		byte[] value = new byte[length];
+		buffer.get(value);
+		return new String(value, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,98 @@
+package tourGuide.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tourGuide.user.User;
+
+/**
+ * Keeps users in a concurrent map. The list handed out by {@link #getAllUsers()} is cached and only rebuilt after
+ * users were added, so a tracker pass over an unchanged user base does not copy it again. The userId ordered copy
+ * that {@link #getUsersAfter(UUID, int)} pages through is cached alongside it, sorted on the first page requested.
+ */
+public class InMemoryUserRepository implements UserRepository {
+	private final ConcurrentMap<String, User> users = new ConcurrentHashMap<>();
+	private final AtomicLong version = new AtomicLong();
+	private volatile Snapshot snapshot = new Snapshot(0, Collections.emptyList());
+
+	@Override
+	public User getUser(String userName) {
+		return users.get(userName);
+	}
+
+	@Override
+	public List<User> getAllUsers() {
+		Snapshot current = snapshot;
+		long currentVersion = version.get();
+		if(current.version != currentVersion) {
+			current = new Snapshot(currentVersion, Collections.unmodifiableList(new ArrayList<>(users.values())));
+			snapshot = current;
+		}
+		return current.users;
+	}
+
+	@Override
+	public List<User> getUsersAfter(UUID after, int limit) {
+		getAllUsers();
+		List<User> byUserId = snapshot.byUserId();
+		int from = after == null ? 0 : firstAfter(byUserId, after);
+		int to = limit > 0 ? (int) Math.min((long) from + limit, byUserId.size()) : byUserId.size();
+		return byUserId.subList(from, to);
+	}
+
+	private static int firstAfter(List<User> byUserId, UUID after) {
+		int low = 0;
+		int high = byUserId.size();
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(byUserId.get(mid).getUserId().compareTo(after) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	@Override
+	public boolean addUser(User user) {
+		if(users.putIfAbsent(user.getUserName(), user) == null) {
+			version.incrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public int size() {
+		return users.size();
+	}
+
+	private static class Snapshot {
+		final long version;
+		final List<User> users;
+		private volatile List<User> byUserId;
+
+		Snapshot(long version, List<User> users) {
+			this.version = version;
+			this.users = users;
+		}
+
+		List<User> byUserId() {
+			List<User> sorted = byUserId;
+			if(sorted == null) {
+				List<User> copy = new ArrayList<>(users);
+				copy.sort(Comparator.comparing(User::getUserId));
+				sorted = Collections.unmodifiableList(copy);
+				byUserId = sorted;
+			}
+			return sorted;
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package tourGuide.repository;
+
+import java.util.List;
+import java.util.UUID;
+
+import tourGuide.user.User;
+
+public interface UserRepository {
+
+	User getUser(String userName);
+
+	/**
+	 * @return a read-only snapshot of every user; callers must not expect it to reflect later additions
+	 */
+	List<User> getAllUsers();
+
+	/**
+	 * Pages through the users in userId order. Passing the last userId of one page returns the next one, so users
+	 * added in between never shift or repeat entries the way an offset into {@link #getAllUsers()} would.
+	 *
+	 * @param after the last userId already seen, or null to start from the first user
+	 * @param limit the page size, or 0 for every remaining user
+	 */
+	List<User> getUsersAfter(UUID after, int limit);
+
+	/**
+	 * @return false when a user with the same user name is already stored
+	 */
+	boolean addUser(User user);
+
+	int size();
+}
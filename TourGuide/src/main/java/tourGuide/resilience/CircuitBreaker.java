@@ -0,0 +1,137 @@
+package tourGuide.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops calls to an upstream once the failure rate over its last calls crosses a threshold. After the open
+ * duration a few trial calls go through: one failure opens the circuit again, all of them succeeding closes it.
+ */
+public class CircuitBreaker {
+	public enum State { CLOSED, OPEN, HALF_OPEN }
+
+	public static final int defaultWindowSize = 100;
+	public static final int defaultMinimumCalls = 20;
+	public static final double defaultFailureRateThreshold = 0.5;
+	public static final long defaultOpenMillis = 30_000;
+	public static final int defaultHalfOpenCalls = 10;
+
+	private final int minimumCalls;
+	private final double failureRateThreshold;
+	private final long openNanos;
+	private final int halfOpenCalls;
+	private final LongSupplier nanoClock;
+	// outcomes of the last calls while closed, true for a failure
+	private final boolean[] window;
+	private int windowIndex;
+	private int windowCount;
+	private int windowFailures;
+	private State state = State.CLOSED;
+	private long openedAt;
+	private int halfOpenPermits;
+	private int halfOpenSuccesses;
+
+	public CircuitBreaker() {
+		this(defaultWindowSize, defaultMinimumCalls, defaultFailureRateThreshold, defaultOpenMillis, defaultHalfOpenCalls, System::nanoTime);
+	}
+
+	public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, long openMillis, int halfOpenCalls, LongSupplier nanoClock) {
+		if(windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize || halfOpenCalls < 1) {
+			throw new IllegalArgumentException("windowSize, minimumCalls and halfOpenCalls must be positive, minimumCalls at most windowSize");
+		}
+		this.window = new boolean[windowSize];
+		this.minimumCalls = minimumCalls;
+		this.failureRateThreshold = failureRateThreshold;
+		this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+		this.halfOpenCalls = halfOpenCalls;
+		this.nanoClock = nanoClock;
+	}
+
+	/**
+	 * @return whether a call may go through; when it does, its outcome must be reported with {@link #onSuccess()},
+	 * {@link #onFailure()} or {@link #onIgnored()}
+	 */
+	public synchronized boolean tryAcquirePermission() {
+		if(state == State.OPEN) {
+			if(nanoClock.getAsLong() - openedAt < openNanos) {
+				return false;
+			}
+			state = State.HALF_OPEN;
+			halfOpenPermits = halfOpenCalls;
+			halfOpenSuccesses = 0;
+		}
+		if(state == State.HALF_OPEN) {
+			if(halfOpenPermits == 0) {
+				return false;
+			}
+			halfOpenPermits--;
+		}
+		return true;
+	}
+
+	public synchronized void onSuccess() {
+		if(state == State.HALF_OPEN) {
+			if(++halfOpenSuccesses == halfOpenCalls) {
+				close();
+			}
+		} else if(state == State.CLOSED) {
+			record(false);
+		}
+	}
+
+	public synchronized void onFailure() {
+		if(state == State.HALF_OPEN) {
+			open();
+		} else if(state == State.CLOSED) {
+			record(true);
+		}
+	}
+
+	/**
+	 * Reports a permitted call that ended without telling anything about the upstream, e.g. when interrupted.
+	 */
+	public synchronized void onIgnored() {
+		if(state == State.HALF_OPEN) {
+			halfOpenPermits++;
+		}
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	private void record(boolean failed) {
+		if(windowCount == window.length) {
+			if(window[windowIndex]) {
+				windowFailures--;
+			}
+		} else {
+			windowCount++;
+		}
+		window[windowIndex] = failed;
+		if(failed) {
+			windowFailures++;
+		}
+		windowIndex = (windowIndex + 1) % window.length;
+		if(windowCount >= minimumCalls && windowFailures >= failureRateThreshold * windowCount) {
+			open();
+		}
+	}
+
+	private void open() {
+		state = State.OPEN;
+		openedAt = nanoClock.getAsLong();
+		resetWindow();
+	}
+
+	private void close() {
+		state = State.CLOSED;
+		resetWindow();
+	}
+
+	private void resetWindow() {
+		windowIndex = 0;
+		windowCount = 0;
+		windowFailures = 0;
+	}
+}
@@ -0,0 +1,57 @@
+package tourGuide.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Rate limiter holding up to a burst of tokens, refilled at a steady rate. A caller that finds the bucket empty
+ * reserves the next token and waits for it outside the lock, so waiting callers are served in arrival order.
+ */
+public class TokenBucket {
+	private final double burst;
+	private final double nanosPerToken;
+	private final LongSupplier nanoClock;
+	private double tokens;
+	private long lastRefill;
+
+	public TokenBucket(double tokensPerSecond, double burst) {
+		this(tokensPerSecond, burst, System::nanoTime);
+	}
+
+	public TokenBucket(double tokensPerSecond, double burst, LongSupplier nanoClock) {
+		if(tokensPerSecond <= 0 || burst < 1) {
+			throw new IllegalArgumentException("tokensPerSecond must be positive and burst at least 1");
+		}
+		this.burst = burst;
+		this.nanosPerToken = TimeUnit.SECONDS.toNanos(1) / tokensPerSecond;
+		this.nanoClock = nanoClock;
+		this.tokens = burst;
+		this.lastRefill = nanoClock.getAsLong();
+	}
+
+	/**
+	 * Takes a token, waiting for one when the bucket is empty.
+	 *
+	 * @return false, without taking a token, if none would come free within the timeout
+	 */
+	public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+		long waitNanos;
+		synchronized(this) {
+			long now = nanoClock.getAsLong();
+			tokens = Math.min(burst, tokens + (now - lastRefill) / nanosPerToken);
+			lastRefill = now;
+			if(tokens >= 1) {
+				tokens -= 1;
+				return true;
+			}
+			// tokens already reserved by waiting callers have taken the count below zero
+			waitNanos = (long) Math.ceil((1 - tokens) * nanosPerToken);
+			if(waitNanos > unit.toNanos(timeout)) {
+				return false;
+			}
+			tokens -= 1;
+		}
+		TimeUnit.NANOSECONDS.sleep(waitNanos);
+		return true;
+	}
+}
@@ -0,0 +1,165 @@
+package tourGuide.resilience;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import tourGuide.execution.ExecutionMode;
+import tourGuide.metrics.TourGuideMetrics;
+import tourGuide.resilience.UpstreamUnavailableException.Reason;
+
+/**
+ * Protects callers from one slow or failing upstream library. Each call
+ * <ol>
+ * <li>takes one of the upstream's own permits (bulkhead), so a stalled upstream ties up its permits only,</li>
+ * <li>takes a token from its rate limiter, if it has one,</li>
+ * <li>asks its {@link CircuitBreaker}, which fails the call at once while the upstream keeps failing,</li>
+ * <li>then runs on the upstream's own executor and is abandoned, interrupted, once its timeout elapses.</li>
+ * </ol>
+ * Waiting for a permit and a token together takes at most the maximum wait. Any refusal or failure surfaces as an
+ * {@link UpstreamUnavailableException}.
+ */
+public class UpstreamGuard {
+	private final String upstream;
+	private final int maxConcurrentCalls;
+	private final long maxWaitNanos;
+	private final long timeoutNanos;
+	private final Semaphore bulkhead;
+	private final TokenBucket rateLimiter;
+	private final CircuitBreaker circuitBreaker;
+	private final ExecutorService executor;
+
+	/**
+	 * @param callsPerSecond the rate limit, or 0 for none
+	 */
+	public UpstreamGuard(String upstream, ExecutionMode executionMode, int maxConcurrentCalls, double callsPerSecond,
+			long maxWaitMillis, long timeoutMillis) {
+		this(upstream, executionMode, maxConcurrentCalls,
+				callsPerSecond > 0 ? new TokenBucket(callsPerSecond, Math.max(1, callsPerSecond)) : null,
+				new CircuitBreaker(), maxWaitMillis, timeoutMillis);
+	}
+
+	/**
+	 * @param rateLimiter null for no rate limit
+	 */
+	public UpstreamGuard(String upstream, ExecutionMode executionMode, int maxConcurrentCalls, TokenBucket rateLimiter,
+			CircuitBreaker circuitBreaker, long maxWaitMillis, long timeoutMillis) {
+		if(maxConcurrentCalls < 1) {
+			throw new IllegalArgumentException("maxConcurrentCalls must be positive: " + maxConcurrentCalls);
+		}
+		this.upstream = upstream;
+		this.maxConcurrentCalls = maxConcurrentCalls;
+		this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+		this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		this.bulkhead = new Semaphore(maxConcurrentCalls);
+		this.rateLimiter = rateLimiter;
+		this.circuitBreaker = circuitBreaker;
+		// never queues: the bulkhead lets no more tasks in than the pool has threads
+		this.executor = executionMode.newExecutor(upstream + "-calls", maxConcurrentCalls);
+	}
+
+	public <T> T call(Supplier<T> call) {
+		long deadline = System.nanoTime() + maxWaitNanos;
+		try {
+			if(!bulkhead.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+				throw reject(Reason.BULKHEAD_FULL, null);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw reject(Reason.INTERRUPTED, e);
+		}
+		boolean submitted = false;
+		try {
+			if(rateLimiter != null && !rateLimiter.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+				throw reject(Reason.RATE_LIMITED, null);
+			}
+			if(!circuitBreaker.tryAcquirePermission()) {
+				throw reject(Reason.CIRCUIT_OPEN, null);
+			}
+			Future<T> future;
+			try {
+				// the permit follows the call, not the caller, so calls abandoned on timeout still count until they return
+				future = executor.submit(() -> {
+					try {
+						return call.get();
+					} finally {
+						bulkhead.release();
+					}
+				});
+			} catch (RuntimeException e) {
+				circuitBreaker.onIgnored();
+				throw e;
+			}
+			submitted = true;
+			return await(future);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw reject(Reason.INTERRUPTED, e);
+		} finally {
+			if(!submitted) {
+				bulkhead.release();
+			}
+		}
+	}
+
+	private <T> T await(Future<T> future) {
+		try {
+			T result = future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+			circuitBreaker.onSuccess();
+			return result;
+		} catch (TimeoutException e) {
+			future.cancel(true);
+			circuitBreaker.onFailure();
+			throw reject(Reason.TIMEOUT, e);
+		} catch (ExecutionException e) {
+			circuitBreaker.onFailure();
+			throw reject(Reason.FAILED, e.getCause());
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			circuitBreaker.onIgnored();
+			Thread.currentThread().interrupt();
+			throw reject(Reason.INTERRUPTED, e);
+		}
+	}
+
+	private UpstreamUnavailableException reject(Reason reason, Throwable cause) {
+		rejections(reason).increment();
+		return new UpstreamUnavailableException(upstream, reason, cause);
+	}
+
+	private Counter rejections(Reason reason) {
+		return TourGuideMetrics.counter("tourguide.upstream.unavailable", "upstream", upstream, "reason", reason.name());
+	}
+
+	public String getUpstream() {
+		return upstream;
+	}
+
+	public int getMaxConcurrentCalls() {
+		return maxConcurrentCalls;
+	}
+
+	/**
+	 * @return the calls holding a permit, abandoned ones included until they return
+	 */
+	public int getInFlightCount() {
+		return maxConcurrentCalls - bulkhead.availablePermits();
+	}
+
+	public int getWaitingCount() {
+		return bulkhead.getQueueLength();
+	}
+
+	public CircuitBreaker.State getCircuitState() {
+		return circuitBreaker.getState();
+	}
+
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+}
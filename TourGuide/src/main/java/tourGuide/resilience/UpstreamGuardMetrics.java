@@ -0,0 +1,34 @@
+package tourGuide.resilience;
+
+import java.util.List;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Publishes each {@link UpstreamGuard}'s permits and circuit state, tagged by upstream. The circuit state gauge reads
+ * 0 when closed, 1 when open and 2 when half open.
+ */
+public class UpstreamGuardMetrics implements MeterBinder {
+	private final List<UpstreamGuard> guards;
+
+	public UpstreamGuardMetrics(List<UpstreamGuard> guards) {
+		this.guards = guards;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		for(UpstreamGuard guard : guards) {
+			Gauge.builder("tourguide.upstream.in.flight", guard, UpstreamGuard::getInFlightCount)
+					.tag("upstream", guard.getUpstream())
+					.register(registry);
+			Gauge.builder("tourguide.upstream.waiting", guard, UpstreamGuard::getWaitingCount)
+					.tag("upstream", guard.getUpstream())
+					.register(registry);
+			Gauge.builder("tourguide.upstream.circuit.state", guard, g -> g.getCircuitState().ordinal())
+					.tag("upstream", guard.getUpstream())
+					.register(registry);
+		}
+	}
+}
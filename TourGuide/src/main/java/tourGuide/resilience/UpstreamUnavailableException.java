@@ -0,0 +1,39 @@
+package tourGuide.resilience;
+
+/**
+ * Thrown by an {@link UpstreamGuard} instead of, or after, calling its upstream. Callers catch it to fall back, e.g.
+ * to the user's last known location.
+ */
+public class UpstreamUnavailableException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	public enum Reason {
+		/** every permit stayed taken for the maximum wait */
+		BULKHEAD_FULL,
+		/** no token came free within the maximum wait */
+		RATE_LIMITED,
+		/** the circuit breaker is open after too many failures */
+		CIRCUIT_OPEN,
+		TIMEOUT,
+		/** the upstream threw, see the cause */
+		FAILED,
+		INTERRUPTED
+	}
+
+	private final String upstream;
+	private final Reason reason;
+
+	public UpstreamUnavailableException(String upstream, Reason reason, Throwable cause) {
+		super(upstream + " unavailable: " + reason, cause);
+		this.upstream = upstream;
+		this.reason = reason;
+	}
+
+	public String getUpstream() {
+		return upstream;
+	}
+
+	public Reason getReason() {
+		return reason;
+	}
+}
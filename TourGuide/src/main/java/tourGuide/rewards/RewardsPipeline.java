@@ -0,0 +1,193 @@
+package tourGuide.rewards;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import tourGuide.execution.ExecutionMode;
+import tourGuide.resilience.UpstreamUnavailableException;
+import tourGuide.service.RewardsService;
+import tourGuide.user.User;
+
+/**
+ * Calculates rewards off the tracking path: tracking publishes users with new locations onto a bounded queue and a
+ * pool of consumers works through it. A full queue blocks publishers, so tracking cannot run away from rewards.
+ * <p>
+ * Consumers take up to drainSize users off the queue at once, which only saves queue lock round trips; each user is
+ * still calculated on its own, since RewardCentral's points are per user and leave no lookup to share between them.
+ * <p>
+ * A user already waiting in the queue is not queued twice; rewards are incremental, so its pending calculation
+ * also covers any location added meanwhile.
+ */
+public class RewardsPipeline {
+	private Logger logger = LoggerFactory.getLogger(RewardsPipeline.class);
+	public static final int defaultQueueCapacity = 10_000;
+	// RewardCentral calls are latency bound, so there are far more consumers than cores
+	public static final int defaultConsumerCount = 50;
+	// virtual consumers cost next to nothing while waiting; RewardsService limits the concurrent RewardCentral calls
+	public static final int defaultVirtualConsumerCount = 500;
+	public static final int defaultDrainSize = 100;
+	private static final long pollTimeoutMillis = 100;
+	private final RewardsService rewardsService;
+	private final BlockingQueue<RewardsEvent> queue;
+	private final Set<User> pendingUsers = ConcurrentHashMap.newKeySet();
+	private final ExecutorService consumers;
+	private final int consumerCount;
+	private final int drainSize;
+	private final AtomicLong publishedCount = new AtomicLong();
+	private final AtomicLong completedCount = new AtomicLong();
+	private final Object idleMonitor = new Object();
+	private volatile long lastLagMillis;
+	private volatile boolean stop = false;
+
+	public RewardsPipeline(RewardsService rewardsService) {
+		this(rewardsService, defaultQueueCapacity,
+				rewardsService.getExecutionMode() == ExecutionMode.VIRTUAL ? defaultVirtualConsumerCount : defaultConsumerCount,
+				defaultDrainSize);
+	}
+
+	public RewardsPipeline(RewardsService rewardsService, int queueCapacity, int consumerCount, int drainSize) {
+		if(queueCapacity < 1 || consumerCount < 1 || drainSize < 1) {
+			throw new IllegalArgumentException("queueCapacity, consumerCount and drainSize must be positive");
+		}
+		this.rewardsService = rewardsService;
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.consumerCount = consumerCount;
+		this.drainSize = drainSize;
+		this.consumers = Executors.newFixedThreadPool(consumerCount, rewardsService.getExecutionMode().threadFactory("rewards-consumer"));
+	}
+
+	public void start() {
+		for(int i = 0; i < consumerCount; i++) {
+			consumers.execute(this::consume);
+		}
+	}
+
+	public void stop() {
+		stop = true;
+		consumers.shutdownNow();
+	}
+
+	/**
+	 * Queues a rewards calculation for the user, blocking while the queue is full.
+	 */
+	public void publish(User user) {
+		if(stop || !pendingUsers.add(user)) {
+			return;
+		}
+		publishedCount.incrementAndGet();
+		try {
+			queue.put(new RewardsEvent(user, System.currentTimeMillis()));
+		} catch (InterruptedException e) {
+			pendingUsers.remove(user);
+			completedCount.incrementAndGet();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Waits until every published calculation has completed.
+	 *
+	 * @return false if the timeout elapsed first
+	 */
+	public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		synchronized(idleMonitor) {
+			while(getLag() > 0) {
+				long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+				if(remaining <= 0) {
+					return false;
+				}
+				idleMonitor.wait(remaining);
+			}
+		}
+		return true;
+	}
+
+	private void consume() {
+		List<RewardsEvent> drained = new ArrayList<>(drainSize);
+		while(!stop && !Thread.currentThread().isInterrupted()) {
+			try {
+				RewardsEvent first = queue.poll(pollTimeoutMillis, TimeUnit.MILLISECONDS);
+				if(first == null) {
+					continue;
+				}
+				drained.add(first);
+			} catch (InterruptedException e) {
+				break;
+			}
+			queue.drainTo(drained, drainSize - 1);
+			for(RewardsEvent event : drained) {
+				// removed before calculating, so a location added during the calculation queues the user again
+				pendingUsers.remove(event.user);
+				try {
+					rewardsService.calculateRewards(event.user);
+				} catch (UpstreamUnavailableException e) {
+					// the user is queued again on their next location
+					logger.debug("Skipped rewards for user " + event.user.getUserName() + ": " + e.getMessage());
+				} catch (RuntimeException e) {
+					logger.error("Failed to calculate rewards for user " + event.user.getUserName(), e);
+				} finally {
+					lastLagMillis = System.currentTimeMillis() - event.publishedAt;
+					completedCount.incrementAndGet();
+				}
+			}
+			drained.clear();
+			if(getLag() == 0) {
+				synchronized(idleMonitor) {
+					idleMonitor.notifyAll();
+				}
+			}
+		}
+	}
+
+	public int getConsumerCount() {
+		return consumerCount;
+	}
+
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	public long getPublishedCount() {
+		return publishedCount.get();
+	}
+
+	public long getCompletedCount() {
+		return completedCount.get();
+	}
+
+	/**
+	 * @return the number of published calculations not completed yet
+	 */
+	public long getLag() {
+		return publishedCount.get() - completedCount.get();
+	}
+
+	/**
+	 * @return how long the most recently completed calculation waited between publishing and completion
+	 */
+	public long getLastLagMillis() {
+		return lastLagMillis;
+	}
+
+	private static class RewardsEvent {
+		final User user;
+		final long publishedAt;
+
+		RewardsEvent(User user, long publishedAt) {
+			this.user = user;
+			this.publishedAt = publishedAt;
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package tourGuide.rewards;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Publishes a {@link RewardsPipeline}'s throughput and lag through the actuator metrics endpoint.
+ */
+public class RewardsPipelineMetrics implements MeterBinder {
+	private final RewardsPipeline rewardsPipeline;
+
+	public RewardsPipelineMetrics(RewardsPipeline rewardsPipeline) {
+		this.rewardsPipeline = rewardsPipeline;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter.builder("tourguide.rewards.pipeline.published", rewardsPipeline, RewardsPipeline::getPublishedCount)
+				.register(registry);
+		FunctionCounter.builder("tourguide.rewards.pipeline.completed", rewardsPipeline, RewardsPipeline::getCompletedCount)
+				.register(registry);
+		Gauge.builder("tourguide.rewards.pipeline.lag", rewardsPipeline, RewardsPipeline::getLag)
+				.register(registry);
+		Gauge.builder("tourguide.rewards.pipeline.lag.millis", rewardsPipeline, RewardsPipeline::getLastLagMillis)
+				.register(registry);
+		Gauge.builder("tourguide.rewards.pipeline.queue.depth", rewardsPipeline, RewardsPipeline::getQueueDepth)
+				.register(registry);
+	}
+}
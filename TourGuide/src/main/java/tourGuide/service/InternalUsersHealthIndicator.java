@@ -0,0 +1,26 @@
+package tourGuide.service;
+
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+
+/**
+ * Reports the application out of service until the internal test users have all been generated, so a load balancer
+ * or a load test can wait for it when they are generated in the background.
+ */
+public class InternalUsersHealthIndicator extends AbstractHealthIndicator {
+	private final TourGuideService tourGuideService;
+
+	public InternalUsersHealthIndicator(TourGuideService tourGuideService) {
+		this.tourGuideService = tourGuideService;
+	}
+
+	@Override
+	protected void doHealthCheck(Health.Builder builder) {
+		if(tourGuideService.isInternalUsersInitialized()) {
+			builder.up();
+		} else {
+			builder.outOfService();
+		}
+		builder.withDetail("users", tourGuideService.getAllUsers().size());
+	}
+}
@@ -1,80 +1,318 @@
 package tourGuide.service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
-import org.springframework.stereotype.Service;
+import org.apache.commons.lang3.time.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
+import io.micrometer.core.instrument.Timer;
 import rewardCentral.RewardCentral;
+import tourGuide.cache.ExpiringCache;
+import tourGuide.cache.LoadingCache;
+import tourGuide.execution.ExecutionMode;
+import tourGuide.geo.AttractionCatalog;
+import tourGuide.geo.AttractionIndex;
+import tourGuide.geo.DistanceMode;
+import tourGuide.geo.GeoPoint;
+import tourGuide.location.GpsUtilLocationProvider;
+import tourGuide.location.LocationProvider;
+import tourGuide.metrics.TourGuideMetrics;
+import tourGuide.resilience.UpstreamGuard;
 import tourGuide.user.User;
 import tourGuide.user.UserReward;
 
-@Service
 public class RewardsService {
-    private static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
+	private Logger logger = LoggerFactory.getLogger(RewardsService.class);
+	// RewardCentral calls are latency bound, so bulk calculations use many more threads than cores
+	public static final int defaultBulkParallelism = 100;
 
 	// proximity in miles
     private int defaultProximityBuffer = 10;
 	private int proximityBuffer = defaultProximityBuffer;
 	private int attractionProximityRange = 200;
-	private final GpsUtil gpsUtil;
 	private final RewardCentral rewardsCentral;
+	private final ExecutionMode executionMode;
+	private final UpstreamGuard rewardCentralGuard;
+	private final ExecutorService bulkExecutor;
+	private volatile LoadingCache<RewardPointsKey, Integer> rewardPointsCache = new ExpiringCache<>(100_000, 30, TimeUnit.MINUTES, true);
+	private volatile DistanceMode distanceMode = DistanceMode.LAW_OF_COSINES;
+	// bumped whenever the proximity rules or attractions change, so already evaluated locations get re-evaluated
+	private final AtomicInteger rewardsGeneration = new AtomicInteger();
+	private final AttractionCatalog attractionCatalog;
+	private final Timer calculateRewardsTimer = TourGuideMetrics.latency("tourguide.rewards.calculate");
+	private final Timer bulkRewardsTimer = TourGuideMetrics.latency("tourguide.rewards.bulk");
+	private final Timer rewardPointsTimer = TourGuideMetrics.latency("tourguide.rewards.points");
+	private final Timer rewardCentralTimer = TourGuideMetrics.externalCall("rewardCentral", "getAttractionRewardPoints");
 	
 	public RewardsService(GpsUtil gpsUtil, RewardCentral rewardCentral) {
-		this.gpsUtil = gpsUtil;
+		this(new GpsUtilLocationProvider(gpsUtil), rewardCentral);
+	}
+	
+	public RewardsService(LocationProvider locationProvider, RewardCentral rewardCentral) {
+		this(locationProvider, rewardCentral, ExecutionMode.PLATFORM);
+	}
+	
+	/**
+	 * @param executionMode also used by the {@link TourGuideService}, tracker and rewards pipeline built on top
+	 */
+	public RewardsService(LocationProvider locationProvider, RewardCentral rewardCentral, ExecutionMode executionMode) {
+		this(locationProvider, rewardCentral, executionMode, 0);
+	}
+	
+	/**
+	 * @param rewardCentralCallsPerSecond the rate RewardCentral is called at most, or 0 for no rate limit
+	 */
+	public RewardsService(LocationProvider locationProvider, RewardCentral rewardCentral, ExecutionMode executionMode,
+			double rewardCentralCallsPerSecond) {
 		this.rewardsCentral = rewardCentral;
+		this.executionMode = executionMode;
+		this.attractionCatalog = new AttractionCatalog(locationProvider::getAttractions, distanceMode, rewardsGeneration::incrementAndGet);
+		// RewardCentral answers within a second
+		this.rewardCentralGuard = new UpstreamGuard("rewardCentral", executionMode, defaultBulkParallelism,
+				rewardCentralCallsPerSecond, 5000, 2000);
+		// shared by every bulk calculation; idle threads time out, so it costs nothing between batches
+		this.bulkExecutor = executionMode.newExecutor("bulk-rewards", defaultBulkParallelism);
+	}
+	
+	public ExecutionMode getExecutionMode() {
+		return executionMode;
+	}
+	
+	public UpstreamGuard getRewardCentralGuard() {
+		return rewardCentralGuard;
 	}
 	
 	public void setProximityBuffer(int proximityBuffer) {
 		this.proximityBuffer = proximityBuffer;
+		rewardsGeneration.incrementAndGet();
+	}
+	
+	/**
+	 * Swaps the cache in front of RewardCentral, e.g. to tune its size or TTL.
+	 */
+	public void setRewardPointsCache(LoadingCache<RewardPointsKey, Integer> rewardPointsCache) {
+		this.rewardPointsCache = rewardPointsCache;
+	}
+	
+	public LoadingCache<RewardPointsKey, Integer> getRewardPointsCache() {
+		return rewardPointsCache;
+	}
+	
+	/**
+	 * Switches the distance kernel used by every distance and proximity check; the attraction index is rebuilt.
+	 */
+	public void setDistanceMode(DistanceMode distanceMode) {
+		this.distanceMode = distanceMode;
+		attractionCatalog.setDistanceMode(distanceMode);
+	}
+	
+	public DistanceMode getDistanceMode() {
+		return distanceMode;
 	}
 	
 	public void setDefaultProximityBuffer() {
 		proximityBuffer = defaultProximityBuffer;
+		rewardsGeneration.incrementAndGet();
+	}
+	
+	/**
+	 * @return the attraction catalog's current snapshot, loaded on first use unless the catalog is refreshing
+	 */
+	public AttractionIndex getAttractionIndex() {
+		return attractionCatalog.getSnapshot();
+	}
+	
+	/**
+	 * Reloads the attractions now; rewards are re-evaluated only if they changed.
+	 */
+	public void refreshAttractionIndex() {
+		attractionCatalog.refresh();
+	}
+	
+	public AttractionCatalog getAttractionCatalog() {
+		return attractionCatalog;
 	}
 	
+	/**
+	 * Only evaluates the visited locations added since the user's last calculation. Attractions are rewarded at
+	 * the first location near them either way, so the outcome matches a full recomputation.
+	 */
 	public void calculateRewards(User user) {
-		List<VisitedLocation> userLocations = user.getVisitedLocations();
-		List<Attraction> attractions = gpsUtil.getAttractions();
+		calculateRewardsTimer.record(() -> calculateNewRewards(user));
+	}
+	
+	private void calculateNewRewards(User user) {
+		// read before the index: a catalog swap in between bumps the generation, so these locations get evaluated again
+		int generation = rewardsGeneration.get();
+		AttractionIndex index = getAttractionIndex();
+		// read before the locations: anything added in between is evaluated now and again next time, never skipped
+		long sequence = user.getVisitedLocationSequence();
 		
-		for(VisitedLocation visitedLocation : userLocations) {
-			for(Attraction attraction : attractions) {
-				if(user.getUserRewards().stream().filter(r -> r.attraction.attractionName.equals(attraction.attractionName)).count() == 0) {
-					if(nearAttraction(visitedLocation, attraction)) {
-						user.addUserReward(new UserReward(visitedLocation, attraction, getRewardPoints(attraction, user)));
-					}
+		for(VisitedLocation visitedLocation : user.getVisitedLocationsSince(user.getRewardsWatermark(generation))) {
+			for(Attraction attraction : index.within(visitedLocation.location, proximityBuffer)) {
+				if(!user.hasRewardForAttraction(attraction.attractionName)) {
+					user.addUserReward(new UserReward(visitedLocation, attraction, getRewardPoints(attraction, user)));
 				}
 			}
 		}
+		user.setRewardsWatermark(generation, sequence);
 	}
 	
-	public boolean isWithinAttractionProximity(Attraction attraction, Location location) {
-		return getDistance(attraction, location) > attractionProximityRange ? false : true;
+	/**
+	 * Calculates rewards for a whole batch of users on the shared bulk pool and returns once all are done.
+	 * <p>
+	 * RewardCentral's points are per (attraction, user), so distinct users never have a lookup in common; repeated
+	 * users are dropped up front, and concurrent lookups of the same pair share a single call through the reward
+	 * points cache's in-flight coalescing.
+	 */
+	public BulkRewardsResult calculateRewards(Collection<User> users) {
+		return calculateRewards(users, defaultBulkParallelism, (completed, total) -> {});
+	}
+	
+	/**
+	 * Same as {@link #calculateRewards(Collection)}, calling the progress listener with the number of completed
+	 * and total users after each partition. The listener is called from the pool threads, possibly concurrently.
+	 *
+	 * @param parallelism how many partitions run at once, capped at {@link #defaultBulkParallelism}
+	 */
+	public BulkRewardsResult calculateRewards(Collection<User> users, int parallelism, BiConsumer<Integer, Integer> progressListener) {
+		StopWatch stopWatch = new StopWatch();
+		stopWatch.start();
+		// a user listed twice would only repeat the same lookups
+		List<User> distinctUsers = new ArrayList<>(new LinkedHashSet<>(users));
+		int total = distinctUsers.size();
+		// several partitions per thread, so one slow partition does not hold up the tail of the batch
+		int partitionSize = Math.max(1, (total + parallelism * 4 - 1) / (parallelism * 4));
+		AtomicInteger nextFrom = new AtomicInteger();
+		AtomicInteger completed = new AtomicInteger();
+		AtomicInteger failed = new AtomicInteger();
+		// each worker takes the next partition until none are left, so this call never has more than parallelism
+		// of them running on the shared pool
+		int workerCount = Math.min(parallelism, (total + partitionSize - 1) / partitionSize);
+		List<CompletableFuture<Void>> workers = new ArrayList<>(workerCount);
+		for(int i = 0; i < workerCount; i++) {
+			workers.add(CompletableFuture.runAsync(() -> {
+				int from;
+				while((from = nextFrom.getAndAdd(partitionSize)) < total) {
+					List<User> partition = distinctUsers.subList(from, Math.min(from + partitionSize, total));
+					for(User user : partition) {
+						try {
+							calculateRewards(user);
+						} catch (RuntimeException e) {
+							failed.incrementAndGet();
+							logger.error("Failed to calculate rewards for user " + user.getUserName(), e);
+						}
+					}
+					progressListener.accept(completed.addAndGet(partition.size()), total);
+				}
+			}, bulkExecutor));
+		}
+		CompletableFuture.allOf(workers.toArray(new CompletableFuture[0])).join();
+		stopWatch.stop();
+		bulkRewardsTimer.record(stopWatch.getTime(), TimeUnit.MILLISECONDS);
+		logger.debug("Calculated rewards for " + total + " users in " + stopWatch.getTime() + " ms.");
+		return new BulkRewardsResult(total, failed.get(), stopWatch.getTime());
+	}
+	
+	/**
+	 * @return the attractions within the attraction proximity range of the location
+	 */
+	public List<Attraction> getAttractionsInProximity(Location location) {
+		return getAttractionIndex().within(location, attractionProximityRange);
 	}
 	
-	private boolean nearAttraction(VisitedLocation visitedLocation, Attraction attraction) {
-		return getDistance(attraction, visitedLocation.location) > proximityBuffer ? false : true;
+	/**
+	 * @return the count attractions closest to the location, closest first, however far away they are
+	 */
+	public List<Attraction> getNearestAttractions(Location location, int count) {
+		return getAttractionIndex().nearest(location, count);
 	}
 	
-	private int getRewardPoints(Attraction attraction, User user) {
-		return rewardsCentral.getAttractionRewardPoints(attraction.attractionId, user.getUserId());
+	public boolean isWithinAttractionProximity(Attraction attraction, Location location) {
+		return distanceMode.isWithin(getAttractionIndex().pointOf(attraction), GeoPoint.of(location), attractionProximityRange);
+	}
+	
+	public int getRewardPoints(Attraction attraction, User user) {
+		return rewardPointsTimer.record(() -> rewardPointsCache.get(new RewardPointsKey(attraction.attractionId, user.getUserId()),
+				key -> rewardCentralGuard.call(() -> rewardCentralTimer.record(() -> rewardsCentral.getAttractionRewardPoints(key.attractionId, key.userId)))));
 	}
 	
 	public double getDistance(Location loc1, Location loc2) {
-        double lat1 = Math.toRadians(loc1.latitude);
-        double lon1 = Math.toRadians(loc1.longitude);
-        double lat2 = Math.toRadians(loc2.latitude);
-        double lon2 = Math.toRadians(loc2.longitude);
-
-        double angle = Math.acos(Math.sin(lat1) * Math.sin(lat2)
-                               + Math.cos(lat1) * Math.cos(lat2) * Math.cos(lon1 - lon2));
-
-        double nauticalMiles = 60 * Math.toDegrees(angle);
-        double statuteMiles = STATUTE_MILES_PER_NAUTICAL_MILE * nauticalMiles;
-        return statuteMiles;
+		return distanceMode.distanceMiles(GeoPoint.of(loc1), GeoPoint.of(loc2));
+	}
+	
+	/**
+	 * Same as {@link #getDistance(Location, Location)}, reusing the attraction's trigonometric terms from the
+	 * attraction index so only the location's are computed.
+	 */
+	public double getDistance(Attraction attraction, Location location) {
+		return distanceMode.distanceMiles(getAttractionIndex().pointOf(attraction), GeoPoint.of(location));
+	}
+	
+	public static final class BulkRewardsResult {
+		private final int userCount;
+		private final int failedCount;
+		private final long elapsedMillis;
+		
+		public BulkRewardsResult(int userCount, int failedCount, long elapsedMillis) {
+			this.userCount = userCount;
+			this.failedCount = failedCount;
+			this.elapsedMillis = elapsedMillis;
+		}
+		
+		public int getUserCount() {
+			return userCount;
+		}
+		
+		public int getFailedCount() {
+			return failedCount;
+		}
+		
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+	}
+	
+	public static final class RewardPointsKey {
+		private final UUID attractionId;
+		private final UUID userId;
+		
+		public RewardPointsKey(UUID attractionId, UUID userId) {
+			this.attractionId = attractionId;
+			this.userId = userId;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if(this == o) {
+				return true;
+			}
+			if(!(o instanceof RewardPointsKey)) {
+				return false;
+			}
+			RewardPointsKey other = (RewardPointsKey) o;
+			return attractionId.equals(other.attractionId) && userId.equals(other.userId);
+		}
+		
+		@Override
+		public int hashCode() {
+			return Objects.hash(attractionId, userId);
+		}
 	}
 
 }
@@ -3,26 +3,53 @@ package tourGuide.service;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.Objects;
+import java.util.SplittableRandom;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Timer;
+import tourGuide.cache.ExpiringCache;
+import tourGuide.cache.LoadingCache;
+import tourGuide.cluster.ClusterMembership;
+import tourGuide.dto.NearbyAttraction;
+import tourGuide.execution.ExecutionMode;
+import tourGuide.helper.DaemonThreadFactory;
 import tourGuide.helper.InternalTestHelper;
+import tourGuide.location.GpsUtilLocationProvider;
+import tourGuide.location.LocationProvider;
+import tourGuide.metrics.TourGuideMetrics;
+import tourGuide.repository.InMemoryUserRepository;
+import tourGuide.repository.UserRepository;
+import tourGuide.resilience.UpstreamGuard;
+import tourGuide.resilience.UpstreamUnavailableException;
+import tourGuide.rewards.RewardsPipeline;
 import tourGuide.tracker.Tracker;
+import tourGuide.tracker.TrackingSchedule;
 import tourGuide.user.User;
+import tourGuide.user.UserPreferences;
 import tourGuide.user.UserReward;
 import tripPricer.Provider;
 import tripPricer.TripPricer;
@@ -30,85 +57,352 @@ import tripPricer.TripPricer;
 @Service
 public class TourGuideService {
 	private Logger logger = LoggerFactory.getLogger(TourGuideService.class);
-	private final GpsUtil gpsUtil;
+	private final LocationProvider locationProvider;
 	private final RewardsService rewardsService;
+	private final UserRepository userRepository;
 	private final TripPricer tripPricer = new TripPricer();
+	private volatile LoadingCache<TripDealsKey, List<Provider>> tripDealsCache = new ExpiringCache<>(100_000, 10, TimeUnit.MINUTES, true);
+	private final ExecutorService trackingExecutor;
+	private final ExecutorService rewardsExecutor;
+	private final UpstreamGuard tripPricerGuard;
+	private final int nearbyAttractionCount = 5;
+	private final Timer trackUserLocationTimer = TourGuideMetrics.latency("tourguide.tracking.user");
+	private final Timer tripDealsTimer = TourGuideMetrics.latency("tourguide.trip.deals");
+	private final Timer nearbyAttractionsTimer = TourGuideMetrics.latency("tourguide.attractions.nearby");
+	private final Timer tripPricerTimer = TourGuideMetrics.externalCall("tripPricer", "getPrice");
 	public final Tracker tracker;
+	public final RewardsPipeline rewardsPipeline;
+	private final CompletableFuture<Void> internalUsersInitialization;
 	boolean testMode = true;
 	
 	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService) {
-		this.gpsUtil = gpsUtil;
+		this(new GpsUtilLocationProvider(gpsUtil), rewardsService, new InMemoryUserRepository());
+	}
+	
+	public TourGuideService(LocationProvider locationProvider, RewardsService rewardsService, UserRepository userRepository) {
+		this(locationProvider, rewardsService, userRepository, false);
+	}
+	
+	public TourGuideService(LocationProvider locationProvider, RewardsService rewardsService, UserRepository userRepository,
+			boolean backgroundInitialization) {
+		this(locationProvider, rewardsService, userRepository, backgroundInitialization, ClusterMembership.standalone(), 0);
+	}
+	
+	/**
+	 * @param backgroundInitialization generate the internal test users on a background thread, so the application
+	 * starts serving right away; {@link #isInternalUsersInitialized()} tells when they are all there
+	 * @param membership decides which users this node's tracker tracks
+	 * @param tripPricerCallsPerSecond the rate TripPricer is called at most, or 0 for no rate limit
+	 */
+	@Autowired
+	public TourGuideService(LocationProvider locationProvider, RewardsService rewardsService, UserRepository userRepository,
+			@Value("${tourguide.internal-users.background:false}") boolean backgroundInitialization, ClusterMembership membership,
+			@Value("${tourguide.upstream.trippricer.calls-per-second:200}") double tripPricerCallsPerSecond) {
+		this.locationProvider = locationProvider;
 		this.rewardsService = rewardsService;
+		this.userRepository = userRepository;
+		ExecutionMode executionMode = rewardsService.getExecutionMode();
+		trackingExecutor = executionMode.newExecutor("gps-tracking", Tracker.defaultTrackingPoolSize);
+		rewardsExecutor = executionMode.newExecutor("rewards", 50);
+		// gpsUtil calls are guarded by the location provider, which knows its upstream's limits
+		tripPricerGuard = new UpstreamGuard("tripPricer", executionMode, 50, tripPricerCallsPerSecond, 5000, 3000);
+		rewardsPipeline = new RewardsPipeline(rewardsService);
+		rewardsPipeline.start();
 		
-		if(testMode) {
+		// a persistent repository may already hold the users from a previous run
+		if(testMode && userRepository.size() == 0) {
 			logger.info("TestMode enabled");
 			logger.debug("Initializing users");
-			initializeInternalUsers();
-			logger.debug("Finished initializing users");
+			if(backgroundInitialization) {
+				internalUsersInitialization = CompletableFuture.runAsync(this::initializeInternalUsers,
+						runnable -> new DaemonThreadFactory("internal-users").newThread(runnable).start())
+					.whenComplete((result, e) -> {
+						if(e != null) {
+							logger.error("Failed to initialize internal test users", e);
+						}
+					});
+			} else {
+				initializeInternalUsers();
+				internalUsersInitialization = CompletableFuture.completedFuture(null);
+			}
+		} else {
+			internalUsersInitialization = CompletableFuture.completedFuture(null);
 		}
-		tracker = new Tracker(this);
+		tracker = new Tracker(this, Tracker.defaultTrackingPoolSize, new TrackingSchedule(), membership);
+		tracker.startTracking();
 		addShutDownHook();
 	}
 	
+	public ExecutionMode getExecutionMode() {
+		return rewardsService.getExecutionMode();
+	}
+	
+	public List<UpstreamGuard> getUpstreamGuards() {
+		List<UpstreamGuard> guards = new ArrayList<>(locationProvider.getUpstreamGuards());
+		guards.addAll(Arrays.asList(rewardsService.getRewardCentralGuard(), tripPricerGuard));
+		return guards;
+	}
+	
+	/**
+	 * @return false while internal test users are still being generated in the background
+	 */
+	public boolean isInternalUsersInitialized() {
+		return internalUsersInitialization.isDone() && !internalUsersInitialization.isCompletedExceptionally();
+	}
+	
 	public List<UserReward> getUserRewards(User user) {
 		return user.getUserRewards();
 	}
 	
+	/**
+	 * @return the user's total reward points, kept as a running sum rather than added up on each call
+	 */
+	public int getUserRewardPoints(User user) {
+		return user.getRewardPointsTotal();
+	}
+	
+	/**
+	 * @return the user's reward for the attraction, or null when there is none
+	 */
+	public UserReward getUserReward(User user, String attractionName) {
+		return user.getUserReward(attractionName);
+	}
+	
 	public VisitedLocation getUserLocation(User user) {
-		VisitedLocation visitedLocation = (user.getVisitedLocations().size() > 0) ?
-			user.getLastVisitedLocation() :
+		VisitedLocation lastVisitedLocation = user.getLastVisitedLocation();
+		VisitedLocation visitedLocation = (lastVisitedLocation != null) ?
+			lastVisitedLocation :
 			trackUserLocation(user);
 		return visitedLocation;
 	}
 	
+	/**
+	 * Same as {@link #getUserLocation(User)} but never blocks the caller on a gpsUtil lookup.
+	 */
+	public CompletableFuture<VisitedLocation> getUserLocationAsync(User user) {
+		VisitedLocation lastVisitedLocation = user.getLastVisitedLocation();
+		return (lastVisitedLocation != null) ?
+			CompletableFuture.completedFuture(lastVisitedLocation) :
+			trackUserLocationAsync(user);
+	}
+	
 	public User getUser(String userName) {
-		return internalUserMap.get(userName);
+		return userRepository.getUser(userName);
 	}
 	
+	/**
+	 * @return a read-only snapshot of every user
+	 */
 	public List<User> getAllUsers() {
-		return internalUserMap.values().stream().collect(Collectors.toList());
+		return userRepository.getAllUsers();
+	}
+	
+	/**
+	 * @see UserRepository#getUsersAfter(UUID, int)
+	 */
+	public List<User> getUsersAfter(UUID after, int limit) {
+		return userRepository.getUsersAfter(after, limit);
 	}
 	
 	public void addUser(User user) {
-		if(!internalUserMap.containsKey(user.getUserName())) {
-			internalUserMap.put(user.getUserName(), user);
-		}
+		userRepository.addUser(user);
 	}
 	
+	/**
+	 * Quotes are cached per user, party, trip duration and reward points, so a change to any of them fetches
+	 * fresh quotes while repeated and concurrent identical requests share a single TripPricer call. While TripPricer
+	 * is unavailable, the user's previous quotes are returned if there are any.
+	 */
 	public List<Provider> getTripDeals(User user) {
-		int cumulatativeRewardPoints = user.getUserRewards().stream().mapToInt(i -> i.getRewardPoints()).sum();
-		List<Provider> providers = tripPricer.getPrice(tripPricerApiKey, user.getUserId(), user.getUserPreferences().getNumberOfAdults(), 
-				user.getUserPreferences().getNumberOfChildren(), user.getUserPreferences().getTripDuration(), cumulatativeRewardPoints);
-		user.setTripDeals(providers);
-		return providers;
+		return tripDealsTimer.record(() -> {
+			int cumulatativeRewardPoints = getUserRewardPoints(user);
+			UserPreferences userPreferences = user.getUserPreferences();
+			TripDealsKey key = new TripDealsKey(user.getUserId(), userPreferences.getNumberOfAdults(),
+					userPreferences.getNumberOfChildren(), userPreferences.getTripDuration(), cumulatativeRewardPoints);
+			List<Provider> providers;
+			try {
+				providers = tripDealsCache.get(key, k -> tripPricerGuard.call(() -> tripPricerTimer.record(() -> tripPricer.getPrice(tripPricerApiKey,
+						k.userId, k.numberOfAdults, k.numberOfChildren, k.tripDuration, k.rewardPoints))));
+			} catch (UpstreamUnavailableException e) {
+				List<Provider> previous = user.getTripDeals();
+				if(previous == null || previous.isEmpty()) {
+					throw e;
+				}
+				logger.debug("Returning previous trip deals for " + user.getUserName() + ": " + e.getMessage());
+				return previous;
+			}
+			user.setTripDeals(providers);
+			return providers;
+		});
+	}
+	
+	/**
+	 * Swaps the cache in front of TripPricer, e.g. to tune its size or TTL.
+	 */
+	public void setTripDealsCache(LoadingCache<TripDealsKey, List<Provider>> tripDealsCache) {
+		this.tripDealsCache = tripDealsCache;
 	}
 	
+	public LoadingCache<TripDealsKey, List<Provider>> getTripDealsCache() {
+		return tripDealsCache;
+	}
+	
+	/**
+	 * Records the user's current location; rewards are calculated asynchronously by the {@link RewardsPipeline}.
+	 * While gpsUtil is unavailable, the user's last known location is returned instead and nothing is recorded; use
+	 * {@link #trackUser(User)} to tell the two apart.
+	 */
 	public VisitedLocation trackUserLocation(User user) {
-		VisitedLocation visitedLocation = gpsUtil.getUserLocation(user.getUserId());
+		return trackUser(user).getVisitedLocation();
+	}
+	
+	/**
+	 * Same as {@link #trackUserLocation(User)}, also telling whether the location is a fallback to the last known one.
+	 */
+	public TrackedLocation trackUser(User user) {
+		return trackUserLocationTimer.record(() -> lookUpUserLocation(user));
+	}
+	
+	/**
+	 * Tracks several users with one {@link LocationProvider#getUserLocations(Collection)} batch, which looks each of
+	 * them up through the provider's guard. Users the batch could not locate get their last known location, like
+	 * {@link #trackUserLocation(User)} falls back to, or are left out of the result when they have none.
+	 */
+	public Map<UUID, VisitedLocation> trackUserLocations(Collection<User> users) {
+		Map<UUID, User> usersById = new HashMap<>();
+		for(User user : users) {
+			usersById.put(user.getUserId(), user);
+		}
+		Map<UUID, VisitedLocation> lookedUp = locationProvider.getUserLocations(usersById.keySet());
+		Map<UUID, VisitedLocation> visitedLocations = new HashMap<>();
+		usersById.forEach((userId, user) -> {
+			VisitedLocation visitedLocation = lookedUp.get(userId);
+			if(visitedLocation != null) {
+				user.addToVisitedLocations(visitedLocation);
+				rewardsPipeline.publish(user);
+			} else {
+				visitedLocation = user.getLastVisitedLocation();
+				if(visitedLocation == null) {
+					logger.debug("No location for " + user.getUserName() + " in the batch and none known before");
+					return;
+				}
+			}
+			visitedLocations.put(userId, visitedLocation);
+		});
+		return visitedLocations;
+	}
+	
+	/**
+	 * Looks the user up on the gps tracking pool. The returned future completes once the location is recorded and
+	 * the user is queued on the {@link RewardsPipeline}.
+	 */
+	public CompletableFuture<VisitedLocation> trackUserLocationAsync(User user) {
+		Timer.Sample sample = Timer.start(Clock.SYSTEM);
+		return CompletableFuture.supplyAsync(() -> {
+			TrackedLocation trackedLocation = lookUpUserLocation(user);
+			sample.stop(trackUserLocationTimer);
+			return trackedLocation.getVisitedLocation();
+		}, trackingExecutor);
+	}
+	
+	private TrackedLocation lookUpUserLocation(User user) {
+		VisitedLocation visitedLocation;
+		try {
+			visitedLocation = locationProvider.getUserLocation(user.getUserId());
+		} catch (UpstreamUnavailableException e) {
+			VisitedLocation lastVisitedLocation = user.getLastVisitedLocation();
+			if(lastVisitedLocation == null) {
+				throw e;
+			}
+			logger.debug("Using last known location of " + user.getUserName() + ": " + e.getMessage());
+			return new TrackedLocation(lastVisitedLocation, true);
+		}
 		user.addToVisitedLocations(visitedLocation);
-		rewardsService.calculateRewards(user);
-		return visitedLocation;
+		rewardsPipeline.publish(user);
+		return new TrackedLocation(visitedLocation, false);
 	}
 
+	/**
+	 * @return the closest attractions to the location, closest first, no matter how far away they are
+	 */
 	public List<Attraction> getNearByAttractions(VisitedLocation visitedLocation) {
-		List<Attraction> nearbyAttractions = new ArrayList<>();
-		for(Attraction attraction : gpsUtil.getAttractions()) {
-			if(rewardsService.isWithinAttractionProximity(attraction, visitedLocation.location)) {
-				nearbyAttractions.add(attraction);
-			}
+		return nearbyAttractionsTimer.record(() -> rewardsService.getNearestAttractions(visitedLocation.location, nearbyAttractionCount));
+	}
+	
+	/**
+	 * Same attractions as {@link #getNearByAttractions(VisitedLocation)} along with their distance and the user's
+	 * reward points, which are fetched concurrently on the rewards pool. Points RewardCentral cannot provide right
+	 * now are reported as 0 rather than failing the whole list.
+	 */
+	public CompletableFuture<List<NearbyAttraction>> getNearbyAttractionDetails(User user, VisitedLocation visitedLocation) {
+		List<Attraction> attractions = getNearByAttractions(visitedLocation);
+		List<CompletableFuture<NearbyAttraction>> lookups = new ArrayList<>(attractions.size());
+		for(Attraction attraction : attractions) {
+			double distance = rewardsService.getDistance(attraction, visitedLocation.location);
+			lookups.add(CompletableFuture.supplyAsync(() -> new NearbyAttraction(attraction, visitedLocation.location,
+					distance, rewardPointsOrZero(attraction, user)), rewardsExecutor));
+		}
+		return CompletableFuture.allOf(lookups.toArray(new CompletableFuture[0]))
+				.thenApply(done -> lookups.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+	}
+	
+	private int rewardPointsOrZero(Attraction attraction, User user) {
+		try {
+			return rewardsService.getRewardPoints(attraction, user);
+		} catch (UpstreamUnavailableException e) {
+			logger.debug("No reward points for " + attraction.attractionName + ": " + e.getMessage());
+			return 0;
 		}
-		
-		return nearbyAttractions;
 	}
 	
 	private void addShutDownHook() {
 		Runtime.getRuntime().addShutdownHook(new Thread() { 
 		      public void run() {
 		        tracker.stopTracking();
+		        rewardsPipeline.stop();
+		        trackingExecutor.shutdownNow();
+		        rewardsExecutor.shutdownNow();
+		        getUpstreamGuards().forEach(UpstreamGuard::shutdown);
 		      } 
 		    }); 
 	}
 	
+	
+	public static final class TripDealsKey {
+		private final UUID userId;
+		private final int numberOfAdults;
+		private final int numberOfChildren;
+		private final int tripDuration;
+		private final int rewardPoints;
+		
+		public TripDealsKey(UUID userId, int numberOfAdults, int numberOfChildren, int tripDuration, int rewardPoints) {
+			this.userId = userId;
+			this.numberOfAdults = numberOfAdults;
+			this.numberOfChildren = numberOfChildren;
+			this.tripDuration = tripDuration;
+			this.rewardPoints = rewardPoints;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if(this == o) {
+				return true;
+			}
+			if(!(o instanceof TripDealsKey)) {
+				return false;
+			}
+			TripDealsKey other = (TripDealsKey) o;
+			return userId.equals(other.userId) && numberOfAdults == other.numberOfAdults
+					&& numberOfChildren == other.numberOfChildren && tripDuration == other.tripDuration
+					&& rewardPoints == other.rewardPoints;
+		}
+		
+		@Override
+		public int hashCode() {
+			return Objects.hash(userId, numberOfAdults, numberOfChildren, tripDuration, rewardPoints);
+		}
+	}
+	
 	/**********************************************************************************
 	 * 
 	 * Methods Below: For Internal Testing
@@ -116,40 +410,76 @@ public class TourGuideService {
 	 **********************************************************************************/
 	private static final String tripPricerApiKey = "test-server-api-key";
 	// Database connection will be used for external users, but for testing purposes internal users are provided and stored in memory
-	private final Map<String, User> internalUserMap = new HashMap<>();
 	private void initializeInternalUsers() {
-		IntStream.range(0, InternalTestHelper.getInternalUserNumber()).forEach(i -> {
-			String userName = "internalUser" + i;
-			String phone = "000";
-			String email = userName + "@tourGuide.com";
-			User user = new User(UUID.randomUUID(), userName, phone, email);
-			generateUserLocationHistory(user);
-			
-			internalUserMap.put(userName, user);
-		});
-		logger.debug("Created " + InternalTestHelper.getInternalUserNumber() + " internal test users.");
+		StopWatch stopWatch = new StopWatch();
+		stopWatch.start();
+		Long seed = InternalTestHelper.getInternalUserSeed();
+		long baseSeed = seed != null ? seed : new SplittableRandom().nextLong();
+		LocalDateTime now = LocalDateTime.now();
+		int userCount = InternalTestHelper.getInternalUserNumber();
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		int chunkSize = Math.max(1, (userCount + parallelism * 4 - 1) / (parallelism * 4));
+		// not the common ForkJoinPool: in the boot jar its threads lack the application class loader, and Moneta
+		// then finds no currency providers for the UserPreferences of each new user
+		ExecutorService generationExecutor = getExecutionMode().newExecutor("internal-users", parallelism);
+		try {
+			List<CompletableFuture<Void>> chunks = new ArrayList<>();
+			for(int from = 0; from < userCount; from += chunkSize) {
+				int chunkFrom = from;
+				int chunkTo = Math.min(from + chunkSize, userCount);
+				chunks.add(CompletableFuture.runAsync(() -> {
+					for(int i = chunkFrom; i < chunkTo; i++) {
+						addInternalUser(i, baseSeed, now);
+					}
+				}, generationExecutor));
+			}
+			CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0])).join();
+		} finally {
+			generationExecutor.shutdown();
+		}
+		stopWatch.stop();
+		logger.debug("Created " + InternalTestHelper.getInternalUserNumber() + " internal test users in " + stopWatch.getTime() + " ms.");
+	}
+	
+	private void addInternalUser(int i, long baseSeed, LocalDateTime now) {
+		// each user gets its own generator derived from the index, so a seeded run does not depend on thread timing
+		SplittableRandom random = new SplittableRandom(new SplittableRandom(baseSeed + i).nextLong());
+		String userName = "internalUser" + i;
+		String phone = "000";
+		String email = userName + "@tourGuide.com";
+		User user = new User(generateRandomUserId(random), userName, phone, email);
+		generateUserLocationHistory(user, random, now);
+		
+		userRepository.addUser(user);
 	}
 	
-	private void generateUserLocationHistory(User user) {
+	private void generateUserLocationHistory(User user, SplittableRandom random, LocalDateTime now) {
 		IntStream.range(0, 3).forEach(i-> {
-			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(generateRandomLatitude(), generateRandomLongitude()), getRandomTime()));
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(generateRandomLatitude(random), generateRandomLongitude(random)), getRandomTime(random, now)));
 		});
 	}
 	
-	private double generateRandomLongitude() {
+	private UUID generateRandomUserId(SplittableRandom random) {
+		// same layout as UUID.randomUUID(): version 4, IETF variant
+		long mostSigBits = (random.nextLong() & ~0xF000L) | 0x4000L;
+		long leastSigBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+		return new UUID(mostSigBits, leastSigBits);
+	}
+	
+	private double generateRandomLongitude(SplittableRandom random) {
 		double leftLimit = -180;
 	    double rightLimit = 180;
-	    return leftLimit + new Random().nextDouble() * (rightLimit - leftLimit);
+	    return leftLimit + random.nextDouble() * (rightLimit - leftLimit);
 	}
 	
-	private double generateRandomLatitude() {
+	private double generateRandomLatitude(SplittableRandom random) {
 		double leftLimit = -85.05112878;
 	    double rightLimit = 85.05112878;
-	    return leftLimit + new Random().nextDouble() * (rightLimit - leftLimit);
+	    return leftLimit + random.nextDouble() * (rightLimit - leftLimit);
 	}
 	
-	private Date getRandomTime() {
-		LocalDateTime localDateTime = LocalDateTime.now().minusDays(new Random().nextInt(30));
+	private Date getRandomTime(SplittableRandom random, LocalDateTime now) {
+		LocalDateTime localDateTime = now.minusDays(random.nextInt(30));
 	    return Date.from(localDateTime.toInstant(ZoneOffset.UTC));
 	}
 	
@@ -0,0 +1,28 @@
+package tourGuide.service;
+
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Outcome of tracking one user: the location it yielded, and whether that is a fresh lookup or the last known
+ * location handed back while the location provider was unavailable.
+ */
+public class TrackedLocation {
+	private final VisitedLocation visitedLocation;
+	private final boolean fallback;
+
+	public TrackedLocation(VisitedLocation visitedLocation, boolean fallback) {
+		this.visitedLocation = visitedLocation;
+		this.fallback = fallback;
+	}
+
+	public VisitedLocation getVisitedLocation() {
+		return visitedLocation;
+	}
+
+	/**
+	 * @return true when the lookup failed and this is the user's last known location, which was not recorded again
+	 */
+	public boolean isFallback() {
+		return fallback;
+	}
+}
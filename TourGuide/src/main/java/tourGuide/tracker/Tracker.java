@@ -1,61 +1,291 @@
 package tourGuide.tracker;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import gpsUtil.location.VisitedLocation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import tourGuide.cluster.ClusterMembership;
+import tourGuide.cluster.HashRing;
+import tourGuide.geo.GeoMath;
+import tourGuide.metrics.TourGuideMetrics;
 import tourGuide.service.TourGuideService;
+import tourGuide.service.TrackedLocation;
+import tourGuide.tracker.TrackingSchedule.ScheduledUser;
 import tourGuide.user.User;
 
+/**
+ * Tracks the users this node owns within its {@link ClusterMembership}. When the membership changes, users now
+ * owned elsewhere are dropped as they come due, and users newly owned are picked up on the next refresh.
+ * <p>
+ * On the schedule, a pass ends once as many lookups have completed as users are scheduled, so the pass metrics tell
+ * how long going round the user base once takes.
+ */
 public class Tracker extends Thread {
 	private Logger logger = LoggerFactory.getLogger(Tracker.class);
-	private static final long trackingPollingInterval = TimeUnit.MINUTES.toSeconds(5);
+	// how often the user base is checked for new users to schedule
+	private static final long userRefreshIntervalMillis = 1000;
+	// gpsUtil calls are latency bound, so the pool is sized well above the core count
+	public static final int defaultTrackingPoolSize = 100;
 	private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+	private final ExecutorService trackingExecutor;
+	private final Semaphore submissionPermits;
+	private final int trackingPoolSize;
+	private final AtomicInteger inFlight = new AtomicInteger();
 	private final TourGuideService tourGuideService;
-	private boolean stop = false;
+	private final TrackingSchedule trackingSchedule;
+	private final ClusterMembership membership;
+	private final Set<User> scheduledUsers = Collections.newSetFromMap(new IdentityHashMap<>());
+	private List<User> knownUsers;
+	private HashRing knownRing;
+	private volatile long lastPassDuration = -1;
+	private volatile int scheduledUserCount;
+	private final Object passLock = new Object();
+	private long passStartedAt;
+	private int passLookups;
+	private final Counter trackedCounter = TourGuideMetrics.counter("tourguide.tracker.tracked", "result", "success");
+	private final Counter failedCounter = TourGuideMetrics.counter("tourguide.tracker.tracked", "result", "failure");
+	private final Counter fallbackCounter = TourGuideMetrics.counter("tourguide.tracker.tracked", "result", "fallback");
+	private final Timer passTimer = TourGuideMetrics.latency("tourguide.tracker.pass");
+	private final DistributionSummary passUsersSummary = TourGuideMetrics.summary("tourguide.tracker.pass.users");
+	private volatile boolean stop = false;
 
 	public Tracker(TourGuideService tourGuideService) {
+		this(tourGuideService, defaultTrackingPoolSize);
+	}
+
+	public Tracker(TourGuideService tourGuideService, int trackingPoolSize) {
+		this(tourGuideService, trackingPoolSize, new TrackingSchedule());
+	}
+
+	public Tracker(TourGuideService tourGuideService, int trackingPoolSize, TrackingSchedule trackingSchedule) {
+		this(tourGuideService, trackingPoolSize, trackingSchedule, ClusterMembership.standalone());
+	}
+
+	public Tracker(TourGuideService tourGuideService, int trackingPoolSize, TrackingSchedule trackingSchedule,
+			ClusterMembership membership) {
+		if(trackingPoolSize < 1) {
+			throw new IllegalArgumentException("trackingPoolSize must be positive: " + trackingPoolSize);
+		}
 		this.tourGuideService = tourGuideService;
-		
+		this.trackingPoolSize = trackingPoolSize;
+		this.trackingSchedule = trackingSchedule;
+		this.membership = membership;
+		// in VIRTUAL mode every lookup gets a virtual thread, and the permits below alone bound the lookups in flight
+		this.trackingExecutor = tourGuideService.getExecutionMode().newExecutor("tracker-worker", trackingPoolSize);
+		// Keeps the queue bounded so a pass over 100k users does not enqueue 100k tasks at once
+		this.submissionPermits = new Semaphore(trackingPoolSize * 4);
+	}
+
+	/**
+	 * Starts tracking users in the background, each whenever its {@link TrackingSchedule} says it is due
+	 */
+	public void startTracking() {
+		synchronized(passLock) {
+			passStartedAt = System.currentTimeMillis();
+		}
 		executorService.submit(this);
 	}
-	
+
 	/**
 	 * Assures to shut down the Tracker thread
 	 */
 	public void stopTracking() {
 		stop = true;
 		executorService.shutdownNow();
+		trackingExecutor.shutdownNow();
 	}
-	
+
 	@Override
 	public void run() {
-		StopWatch stopWatch = new StopWatch();
 		while(true) {
 			if(Thread.currentThread().isInterrupted() || stop) {
 				logger.debug("Tracker stopping");
 				break;
 			}
-			
-			List<User> users = tourGuideService.getAllUsers();
-			logger.debug("Begin Tracker. Tracking " + users.size() + " users.");
-			stopWatch.start();
-			users.forEach(u -> tourGuideService.trackUserLocation(u));
-			stopWatch.stop();
-			logger.debug("Tracker Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) + " seconds."); 
-			stopWatch.reset();
+
+			scheduleNewUsers();
 			try {
-				logger.debug("Tracker sleeping");
-				TimeUnit.SECONDS.sleep(trackingPollingInterval);
+				ScheduledUser scheduledUser = trackingSchedule.pollDue(userRefreshIntervalMillis, TimeUnit.MILLISECONDS);
+				if(scheduledUser != null && !membership.owns(scheduledUser.getUser().getUserId())) {
+					scheduledUsers.remove(scheduledUser.getUser());
+					scheduledUserCount = scheduledUsers.size();
+				} else if(scheduledUser != null) {
+					submissionPermits.acquire();
+					dispatch(scheduledUser);
+				}
 			} catch (InterruptedException e) {
 				break;
 			}
 		}
-		
+
+	}
+
+	private void scheduleNewUsers() {
+		List<User> users = tourGuideService.getAllUsers();
+		HashRing ring = membership.getRing();
+		// the repository hands out the same snapshot until users are added, and the ring only changes with the members
+		if(users == knownUsers && ring == knownRing) {
+			return;
+		}
+		for(User user : users) {
+			if(membership.owns(user.getUserId()) && scheduledUsers.add(user)) {
+				trackingSchedule.add(user);
+			}
+		}
+		knownUsers = users;
+		knownRing = ring;
+		scheduledUserCount = scheduledUsers.size();
+		logger.debug("Tracker scheduling " + scheduledUsers.size() + " of " + users.size() + " users as "
+				+ membership.getLocalNode() + " in " + ring + ".");
+	}
+
+	private void dispatch(ScheduledUser scheduledUser) {
+		User user = scheduledUser.getUser();
+		inFlight.incrementAndGet();
+		try {
+			trackingExecutor.execute(() -> {
+				double movedMiles = Double.MAX_VALUE;
+				boolean lookedUp = true;
+				try {
+					VisitedLocation previous = user.getLastVisitedLocation();
+					TrackedLocation current = tourGuideService.trackUser(user);
+					if(current.isFallback()) {
+						// gpsUtil was unavailable and the last known location came back, which says nothing about movement
+						lookedUp = false;
+						fallbackCounter.increment();
+					} else {
+						trackedCounter.increment();
+						if(previous != null) {
+							movedMiles = GeoMath.distanceMiles(previous.location, current.getVisitedLocation().location);
+						}
+					}
+				} catch (RuntimeException e) {
+					failedCounter.increment();
+					logger.error("Failed to track user " + user.getUserName(), e);
+				} finally {
+					if(lookedUp) {
+						trackingSchedule.reschedule(scheduledUser, movedMiles);
+					} else {
+						trackingSchedule.rescheduleUnchanged(scheduledUser);
+					}
+					inFlight.decrementAndGet();
+					submissionPermits.release();
+					scheduledLookupCompleted();
+				}
+			});
+		} catch (RuntimeException e) {
+			trackingSchedule.reschedule(scheduledUser, Double.MAX_VALUE);
+			inFlight.decrementAndGet();
+			submissionPermits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Tracks every given user on the tracking pool and waits for the whole pass to complete.
+	 *
+	 * @return the pass duration in milliseconds
+	 */
+	public long trackUsers(List<User> users) throws InterruptedException {
+		StopWatch stopWatch = new StopWatch();
+		stopWatch.start();
+		CountDownLatch remaining = new CountDownLatch(users.size());
+		for(User user : users) {
+			submissionPermits.acquire();
+			inFlight.incrementAndGet();
+			try {
+				trackingExecutor.execute(() -> {
+					try {
+						if(tourGuideService.trackUser(user).isFallback()) {
+							fallbackCounter.increment();
+						} else {
+							trackedCounter.increment();
+						}
+					} catch (RuntimeException e) {
+						failedCounter.increment();
+						logger.error("Failed to track user " + user.getUserName(), e);
+					} finally {
+						inFlight.decrementAndGet();
+						submissionPermits.release();
+						remaining.countDown();
+					}
+				});
+			} catch (RuntimeException e) {
+				inFlight.decrementAndGet();
+				submissionPermits.release();
+				throw e;
+			}
+		}
+		remaining.await();
+		stopWatch.stop();
+		recordPass(stopWatch.getTime(), users.size());
+		return stopWatch.getTime();
+	}
+
+	private void scheduledLookupCompleted() {
+		synchronized(passLock) {
+			if(++passLookups < scheduledUserCount) {
+				return;
+			}
+			long now = System.currentTimeMillis();
+			recordPass(now - passStartedAt, passLookups);
+			passStartedAt = now;
+			passLookups = 0;
+		}
+	}
+
+	private void recordPass(long durationMillis, int users) {
+		lastPassDuration = durationMillis;
+		passTimer.record(durationMillis, TimeUnit.MILLISECONDS);
+		passUsersSummary.record(users);
+	}
+
+	public int getTrackingPoolSize() {
+		return trackingPoolSize;
+	}
+
+	public int getQueueDepth() {
+		if(trackingExecutor instanceof ThreadPoolExecutor) {
+			return ((ThreadPoolExecutor) trackingExecutor).getQueue().size();
+		}
+		return 0;
+	}
+
+	public int getInFlightCount() {
+		return inFlight.get();
+	}
+
+	public int getScheduledCount() {
+		return trackingSchedule.size();
+	}
+
+	/**
+	 * @return the number of users past their due time that have not been dispatched yet
+	 */
+	public int getOverdueCount() {
+		return trackingSchedule.getOverdueCount();
+	}
+
+	/**
+	 * @return the duration of the last completed pass in milliseconds, or -1 before the first pass
+	 */
+	public long getLastPassDuration() {
+		return lastPassDuration;
 	}
 }
@@ -0,0 +1,30 @@
+package tourGuide.tracker;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Publishes a {@link Tracker}'s schedule and pool figures through the actuator metrics endpoint.
+ */
+public class TrackerMetrics implements MeterBinder {
+	private final Tracker tracker;
+
+	public TrackerMetrics(Tracker tracker) {
+		this.tracker = tracker;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("tourguide.tracker.scheduled", tracker, Tracker::getScheduledCount)
+				.register(registry);
+		Gauge.builder("tourguide.tracker.overdue", tracker, Tracker::getOverdueCount)
+				.register(registry);
+		Gauge.builder("tourguide.tracker.in.flight", tracker, Tracker::getInFlightCount)
+				.register(registry);
+		Gauge.builder("tourguide.tracker.queue.depth", tracker, Tracker::getQueueDepth)
+				.register(registry);
+		Gauge.builder("tourguide.tracker.pass.last.millis", tracker, Tracker::getLastPassDuration)
+				.register(registry);
+	}
+}
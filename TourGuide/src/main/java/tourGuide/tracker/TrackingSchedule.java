@@ -0,0 +1,172 @@
+package tourGuide.tracker;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import tourGuide.user.User;
+
+/**
+ * Per-user tracking due times, ordered in a priority queue.
+ * <p>
+ * Users that moved since their previous lookup are polled every minimum interval; stationary users back off,
+ * doubling their interval up to the maximum. Due times advance at a fixed rate from the previous due time rather
+ * than from when the lookup finished, so slow lookups do not make the schedule drift; slots missed entirely are
+ * skipped instead of being caught up in a burst. First due times are spread over the minimum interval by user id so
+ * the load is even rather than one burst per interval.
+ */
+public class TrackingSchedule {
+	public static final long defaultMinIntervalMillis = TimeUnit.MINUTES.toMillis(5);
+	public static final long defaultMaxIntervalMillis = TimeUnit.HOURS.toMillis(1);
+	public static final double defaultMovementThresholdMiles = 0.1;
+	private final long minIntervalMillis;
+	private final long maxIntervalMillis;
+	private final double movementThresholdMiles;
+	private final LongSupplier clock;
+	private final PriorityQueue<ScheduledUser> queue = new PriorityQueue<>(Comparator.comparingLong(s -> s.dueAt));
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition headChanged = lock.newCondition();
+
+	public TrackingSchedule() {
+		this(defaultMinIntervalMillis, defaultMaxIntervalMillis, defaultMovementThresholdMiles, System::currentTimeMillis);
+	}
+
+	public TrackingSchedule(long minIntervalMillis, long maxIntervalMillis, double movementThresholdMiles, LongSupplier clock) {
+		if(minIntervalMillis < 1 || maxIntervalMillis < minIntervalMillis) {
+			throw new IllegalArgumentException("Intervals must be positive and min must not exceed max");
+		}
+		this.minIntervalMillis = minIntervalMillis;
+		this.maxIntervalMillis = maxIntervalMillis;
+		this.movementThresholdMiles = movementThresholdMiles;
+		this.clock = clock;
+	}
+
+	/**
+	 * Schedules a new user at its offset within the minimum interval.
+	 */
+	public void add(User user) {
+		long offset = Math.floorMod(user.getUserId().hashCode(), minIntervalMillis);
+		offer(new ScheduledUser(user, clock.getAsLong() + offset, minIntervalMillis));
+	}
+
+	/**
+	 * Removes and returns the earliest user whose due time has passed, waiting up to the timeout for one.
+	 *
+	 * @return null if no user came due in time
+	 */
+	public ScheduledUser pollDue(long timeout, TimeUnit unit) throws InterruptedException {
+		long remainingNanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while(true) {
+				ScheduledUser head = queue.peek();
+				long now = clock.getAsLong();
+				if(head != null && head.dueAt <= now) {
+					return queue.poll();
+				}
+				if(remainingNanos <= 0) {
+					return null;
+				}
+				long waitNanos = head == null ? remainingNanos
+						: Math.min(remainingNanos, TimeUnit.MILLISECONDS.toNanos(head.dueAt - now));
+				long slept = waitNanos - headChanged.awaitNanos(waitNanos);
+				remainingNanos -= slept;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Puts a user back after its lookup, at its next fixed-rate slot for the interval its movement calls for.
+	 */
+	public void reschedule(ScheduledUser scheduledUser, double movedMiles) {
+		long interval = movedMiles >= movementThresholdMiles ? minIntervalMillis
+				: Math.min(scheduledUser.intervalMillis * 2, maxIntervalMillis);
+		reschedule(scheduledUser, interval);
+	}
+
+	/**
+	 * Puts a user back at its next slot for its current interval, for lookups that told nothing about its movement.
+	 */
+	public void rescheduleUnchanged(ScheduledUser scheduledUser) {
+		reschedule(scheduledUser, scheduledUser.intervalMillis);
+	}
+
+	private void reschedule(ScheduledUser scheduledUser, long interval) {
+		long now = clock.getAsLong();
+		long dueAt = scheduledUser.dueAt + interval;
+		if(dueAt <= now) {
+			// skip the slots already missed so the user is not tracked several times in a row
+			dueAt += ((now - dueAt) / interval + 1) * interval;
+		}
+		offer(new ScheduledUser(scheduledUser.user, dueAt, interval));
+	}
+
+	public int size() {
+		lock.lock();
+		try {
+			return queue.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the number of users past their due time and still waiting to be dispatched
+	 */
+	public int getOverdueCount() {
+		long now = clock.getAsLong();
+		lock.lock();
+		try {
+			int overdue = 0;
+			for(ScheduledUser scheduledUser : queue) {
+				if(scheduledUser.dueAt <= now) {
+					overdue++;
+				}
+			}
+			return overdue;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void offer(ScheduledUser scheduledUser) {
+		lock.lock();
+		try {
+			queue.add(scheduledUser);
+			if(queue.peek() == scheduledUser) {
+				headChanged.signalAll();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public static final class ScheduledUser {
+		private final User user;
+		private final long dueAt;
+		private final long intervalMillis;
+
+		ScheduledUser(User user, long dueAt, long intervalMillis) {
+			this.user = user;
+			this.dueAt = dueAt;
+			this.intervalMillis = intervalMillis;
+		}
+
+		public User getUser() {
+			return user;
+		}
+
+		public long getDueAt() {
+			return dueAt;
+		}
+
+		public long getIntervalMillis() {
+			return intervalMillis;
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package tourGuide.user;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import gpsUtil.location.Attraction;
+
+/**
+ * Numbers attractions so rewards can refer to them by an int index instead of holding them.
+ * <p>
+ * gpsUtil hands out new attraction ids on every call, so attractions are told apart by name, place and coordinates,
+ * and the first instance registered is the one handed back. Registering that instance again is a single identity
+ * lookup. Registered attractions are never removed, which is fine for gpsUtil's fixed set.
+ */
+public class AttractionRegistry {
+	private static final AttractionRegistry shared = new AttractionRegistry();
+
+	private final Map<List<Object>, Integer> indexes = new ConcurrentHashMap<>();
+	// Attraction does not override equals, so this map goes by instance
+	private final Map<Attraction, Integer> registeredInstances = new ConcurrentHashMap<>();
+	private volatile Attraction[] attractions = new Attraction[16];
+	private int count = 0;
+
+	public static AttractionRegistry getShared() {
+		return shared;
+	}
+
+	public int register(Attraction attraction) {
+		Integer registered = registeredInstances.get(attraction);
+		if(registered != null) {
+			return registered;
+		}
+		List<Object> key = Arrays.asList(attraction.attractionName, attraction.city, attraction.state,
+				attraction.latitude, attraction.longitude);
+		Integer index = indexes.get(key);
+		if(index != null) {
+			return index;
+		}
+		synchronized(this) {
+			index = indexes.get(key);
+			if(index == null) {
+				Attraction[] grown = count < attractions.length ? attractions : Arrays.copyOf(attractions, count * 2);
+				grown[count] = attraction;
+				// the volatile write publishes the new slot to readers of any index handed out below
+				attractions = grown;
+				index = count++;
+				indexes.put(key, index);
+				registeredInstances.put(attraction, index);
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * @return the registered instance standing for the attraction, registering it if needed
+	 */
+	public Attraction canonical(Attraction attraction) {
+		return get(register(attraction));
+	}
+
+	public Attraction get(int index) {
+		return attractions[index];
+	}
+
+	public synchronized int size() {
+		return count;
+	}
+}
@@ -0,0 +1,63 @@
+package tourGuide.user;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How much visited location history a user keeps. Durations are in milliseconds, 0 disables the rule.
+ */
+public class HistoryRetentionPolicy {
+
+	private static volatile HistoryRetentionPolicy defaultPolicy = new HistoryRetentionPolicy(1000, 0,
+			TimeUnit.DAYS.toMillis(1), TimeUnit.HOURS.toMillis(1));
+
+	private final int capacity;
+	private final long maxAge;
+	private final long downsampleAfter;
+	private final long downsampleInterval;
+
+	/**
+	 * @param capacity most points kept, the oldest are overwritten beyond it
+	 * @param maxAge points older than this are dropped
+	 * @param downsampleAfter points older than this are thinned out once the history is full
+	 * @param downsampleInterval thinned points keep at most one point per interval
+	 */
+	public HistoryRetentionPolicy(int capacity, long maxAge, long downsampleAfter, long downsampleInterval) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		}
+		if(downsampleAfter > 0 && downsampleInterval <= 0) {
+			throw new IllegalArgumentException("downsampleInterval must be positive when downsampling is enabled");
+		}
+		this.capacity = capacity;
+		this.maxAge = maxAge;
+		this.downsampleAfter = downsampleAfter;
+		this.downsampleInterval = downsampleInterval;
+	}
+
+	public static HistoryRetentionPolicy getDefaultPolicy() {
+		return defaultPolicy;
+	}
+
+	/**
+	 * Applies to users created afterwards.
+	 */
+	public static void setDefaultPolicy(HistoryRetentionPolicy policy) {
+		defaultPolicy = policy;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public long getMaxAge() {
+		return maxAge;
+	}
+
+	public long getDownsampleAfter() {
+		return downsampleAfter;
+	}
+
+	public long getDownsampleInterval() {
+		return downsampleInterval;
+	}
+}
@@ -0,0 +1,180 @@
+package tourGuide.user;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Bounded visited location history kept in parallel primitive arrays used as a ring buffer.
+ * <p>
+ * Every appended point gets a sequence number, so callers can ask for what was appended since they last looked
+ * even after older points were dropped. Once the buffer is full it is compacted: points past the maximum age are
+ * dropped and points past the downsampling age are thinned to one per interval. Compaction runs at most once per
+ * quarter of the capacity appended; in between the oldest point is overwritten.
+ */
+public class LocationHistory {
+	private static final int INITIAL_CAPACITY = 8;
+
+	private final UUID userId;
+	private final HistoryRetentionPolicy policy;
+	private double[] latitudes = new double[0];
+	private double[] longitudes = new double[0];
+	private long[] times = new long[0];
+	private int head = 0;
+	private int count = 0;
+	private long appended = 0;
+	private int appendsUntilCompaction = 0;
+
+	public LocationHistory(UUID userId, HistoryRetentionPolicy policy) {
+		this.userId = userId;
+		this.policy = policy;
+	}
+
+	public synchronized void append(double latitude, double longitude, long time) {
+		pruneExpired(System.currentTimeMillis());
+		if(count == latitudes.length && count < policy.getCapacity()) {
+			resize(Math.min(policy.getCapacity(), Math.max(INITIAL_CAPACITY, count * 2)));
+		}
+		if(count == latitudes.length) {
+			if(appendsUntilCompaction <= 0) {
+				compact(System.currentTimeMillis());
+				appendsUntilCompaction = Math.max(1, policy.getCapacity() / 4);
+			}
+			if(count == latitudes.length) {
+				head = (head + 1) % latitudes.length;
+				count--;
+			}
+		}
+		appendsUntilCompaction--;
+		int tail = (head + count) % latitudes.length;
+		latitudes[tail] = latitude;
+		longitudes[tail] = longitude;
+		times[tail] = time;
+		count++;
+		appended++;
+	}
+
+	/**
+	 * Replaces the history with the given points, oldest first, taking ownership of the arrays. The retention policy
+	 * is applied once to the whole batch instead of on every point, as it would be when appending them one by one.
+	 */
+	public synchronized void restore(double[] latitudes, double[] longitudes, long[] times, int count) {
+		this.latitudes = latitudes;
+		this.longitudes = longitudes;
+		this.times = times;
+		this.head = 0;
+		this.count = count;
+		this.appended = count;
+		long now = System.currentTimeMillis();
+		pruneExpired(now);
+		if(this.count > policy.getCapacity()) {
+			compact(now);
+			appendsUntilCompaction = Math.max(1, policy.getCapacity() / 4);
+		}
+		int kept = Math.min(this.count, policy.getCapacity());
+		head += this.count - kept;
+		this.count = kept;
+		resize(Math.min(policy.getCapacity(), Math.max(INITIAL_CAPACITY, kept)));
+	}
+
+	public synchronized int size() {
+		return count;
+	}
+
+	/**
+	 * @return the sequence number the next appended point will get, i.e. how many points were ever appended
+	 */
+	public synchronized long getSequence() {
+		return appended;
+	}
+
+	public synchronized List<VisitedLocation> toVisitedLocations() {
+		return visitedLocationsFrom(0);
+	}
+
+	/**
+	 * @return the retained points appended at or after the given sequence number, oldest first
+	 */
+	public synchronized List<VisitedLocation> since(long sequence) {
+		long newer = appended - sequence;
+		if(newer <= 0) {
+			return new ArrayList<>();
+		}
+		return visitedLocationsFrom(newer >= count ? 0 : count - (int) newer);
+	}
+
+	public synchronized void clear() {
+		head = 0;
+		count = 0;
+	}
+
+	private List<VisitedLocation> visitedLocationsFrom(int offset) {
+		List<VisitedLocation> result = new ArrayList<>(count - offset);
+		for(int i = offset; i < count; i++) {
+			int slot = (head + i) % latitudes.length;
+			result.add(new VisitedLocation(userId, new Location(latitudes[slot], longitudes[slot]), new Date(times[slot])));
+		}
+		return result;
+	}
+
+	private void pruneExpired(long now) {
+		if(policy.getMaxAge() <= 0) {
+			return;
+		}
+		while(count > 0 && now - times[head] > policy.getMaxAge()) {
+			head = (head + 1) % latitudes.length;
+			count--;
+		}
+	}
+
+	private void compact(long now) {
+		double[] keptLatitudes = new double[latitudes.length];
+		double[] keptLongitudes = new double[longitudes.length];
+		long[] keptTimes = new long[times.length];
+		int kept = 0;
+		long lastBucket = Long.MIN_VALUE;
+		for(int i = 0; i < count; i++) {
+			int slot = (head + i) % latitudes.length;
+			long age = now - times[slot];
+			if(policy.getMaxAge() > 0 && age > policy.getMaxAge()) {
+				continue;
+			}
+			if(policy.getDownsampleAfter() > 0 && age > policy.getDownsampleAfter()) {
+				long bucket = Math.floorDiv(times[slot], policy.getDownsampleInterval());
+				if(bucket == lastBucket) {
+					continue;
+				}
+				lastBucket = bucket;
+			}
+			keptLatitudes[kept] = latitudes[slot];
+			keptLongitudes[kept] = longitudes[slot];
+			keptTimes[kept] = times[slot];
+			kept++;
+		}
+		latitudes = keptLatitudes;
+		longitudes = keptLongitudes;
+		times = keptTimes;
+		head = 0;
+		count = kept;
+	}
+
+	private void resize(int capacity) {
+		double[] newLatitudes = new double[capacity];
+		double[] newLongitudes = new double[capacity];
+		long[] newTimes = new long[capacity];
+		for(int i = 0; i < count; i++) {
+			int slot = (head + i) % latitudes.length;
+			newLatitudes[i] = latitudes[slot];
+			newLongitudes[i] = longitudes[slot];
+			newTimes[i] = times[slot];
+		}
+		latitudes = newLatitudes;
+		longitudes = newLongitudes;
+		times = newTimes;
+		head = 0;
+	}
+}
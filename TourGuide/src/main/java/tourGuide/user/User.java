@@ -1,28 +1,47 @@
 package tourGuide.user;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import tripPricer.Provider;
 
 public class User {
 	private final UUID userId;
 	private final String userName;
-	private String phoneNumber;
-	private String emailAddress;
-	private Date latestLocationTimestamp;
-	private List<VisitedLocation> visitedLocations = new ArrayList<>();
-	private List<UserReward> userRewards = new ArrayList<>();
-	private UserPreferences userPreferences = new UserPreferences();
-	private List<Provider> tripDeals = new ArrayList<>();
+	private volatile String phoneNumber;
+	private volatile String emailAddress;
+	private volatile Date latestLocationTimestamp;
+	// tracker, rewards and request threads all touch the same user, so its collections must be safe to share
+	private final LocationHistory visitedLocations;
+	private volatile VisitedLocation lastVisitedLocation;
+	private final List<UserReward> userRewards = new CopyOnWriteArrayList<>();
+	private final List<UserReward> userRewardsView = Collections.unmodifiableList(userRewards);
+	private final Map<String, UserReward> rewardsByAttraction = new ConcurrentHashMap<>();
+	private final AtomicInteger rewardPointsTotal = new AtomicInteger();
+	private long rewardsWatermark = 0;
+	private int rewardsWatermarkGeneration = 0;
+	private volatile UserPreferences userPreferences = new UserPreferences();
+	private volatile List<Provider> tripDeals = new ArrayList<>();
+	private volatile UserChangeListener changeListener;
 	public User(UUID userId, String userName, String phoneNumber, String emailAddress) {
+		this(userId, userName, phoneNumber, emailAddress, HistoryRetentionPolicy.getDefaultPolicy());
+	}
+	
+	public User(UUID userId, String userName, String phoneNumber, String emailAddress, HistoryRetentionPolicy historyRetentionPolicy) {
 		this.userId = userId;
 		this.userName = userName;
 		this.phoneNumber = phoneNumber;
 		this.emailAddress = emailAddress;
+		this.visitedLocations = new LocationHistory(userId, historyRetentionPolicy);
 	}
 	
 	public UUID getUserId() {
@@ -57,26 +76,119 @@ public class User {
 		return latestLocationTimestamp;
 	}
 	
-	public void addToVisitedLocations(VisitedLocation visitedLocation) {
-		visitedLocations.add(visitedLocation);
+	public synchronized void addToVisitedLocations(VisitedLocation visitedLocation) {
+		Location location = visitedLocation.location;
+		visitedLocations.append(location.latitude, location.longitude, visitedLocation.timeVisited.getTime());
+		lastVisitedLocation = visitedLocation;
+		UserChangeListener listener = changeListener;
+		if(listener != null) {
+			listener.visitedLocationAdded(this, visitedLocation);
+		}
 	}
 	
+	/**
+	 * Replaces the visited locations with points read back from storage, oldest first, without notifying the change
+	 * listener. The arrays are handed over to the history and must not be used afterwards.
+	 */
+	public synchronized void restoreVisitedLocations(double[] latitudes, double[] longitudes, long[] times, int count) {
+		lastVisitedLocation = count == 0 ? null : new VisitedLocation(userId,
+				new Location(latitudes[count - 1], longitudes[count - 1]), new Date(times[count - 1]));
+		visitedLocations.restore(latitudes, longitudes, times, count);
+	}
+	
+	/**
+	 * @return a copy of the retained history, oldest first; older points may have been dropped or thinned out
+	 * according to the user's {@link HistoryRetentionPolicy}
+	 */
 	public List<VisitedLocation> getVisitedLocations() {
-		return visitedLocations;
+		return visitedLocations.toVisitedLocations();
+	}
+	
+	public int getVisitedLocationCount() {
+		return visitedLocations.size();
 	}
 	
-	public void clearVisitedLocations() {
+	/**
+	 * @return how many locations were ever added, used as a position to ask for newer locations from
+	 */
+	public long getVisitedLocationSequence() {
+		return visitedLocations.getSequence();
+	}
+	
+	/**
+	 * @return the retained locations added at or after the given sequence, oldest first
+	 */
+	public List<VisitedLocation> getVisitedLocationsSince(long sequence) {
+		return visitedLocations.since(sequence);
+	}
+	
+	public synchronized void clearVisitedLocations() {
 		visitedLocations.clear();
+		lastVisitedLocation = null;
+		UserChangeListener listener = changeListener;
+		if(listener != null) {
+			listener.visitedLocationsCleared(this);
+		}
 	}
 	
-	public void addUserReward(UserReward userReward) {
-		if(userRewards.stream().filter(r -> !r.attraction.attractionName.equals(userReward.attraction)).count() == 0) {
+	/**
+	 * Keeps the first reward per attraction; later ones for the same attraction are ignored.
+	 */
+	public synchronized void addUserReward(UserReward userReward) {
+		if(rewardsByAttraction.putIfAbsent(userReward.getAttraction().attractionName, userReward) == null) {
 			userRewards.add(userReward);
+			rewardPointsTotal.addAndGet(userReward.getRewardPoints());
+			UserChangeListener listener = changeListener;
+			if(listener != null) {
+				listener.userRewardAdded(this, userReward);
+			}
 		}
 	}
 	
+	public boolean hasRewardForAttraction(String attractionName) {
+		return rewardsByAttraction.containsKey(attractionName);
+	}
+	
+	/**
+	 * @return the reward for the attraction, or null when there is none
+	 */
+	public UserReward getUserReward(String attractionName) {
+		return rewardsByAttraction.get(attractionName);
+	}
+	
+	/**
+	 * @return the sum of the reward points as they were when each reward was added
+	 */
+	public int getRewardPointsTotal() {
+		return rewardPointsTotal.get();
+	}
+	
+	/**
+	 * Visited location sequence up to which rewards were evaluated under the given rewards generation.
+	 * A watermark recorded under an older generation no longer applies and reads as 0.
+	 */
+	public synchronized long getRewardsWatermark(int generation) {
+		return generation == rewardsWatermarkGeneration ? rewardsWatermark : 0;
+	}
+	
+	/**
+	 * Only moves the watermark forward, so a slower concurrent calculation cannot rewind it.
+	 */
+	public synchronized void setRewardsWatermark(int generation, long watermark) {
+		if(generation != rewardsWatermarkGeneration) {
+			rewardsWatermarkGeneration = generation;
+			rewardsWatermark = watermark;
+		} else if(watermark > rewardsWatermark) {
+			rewardsWatermark = watermark;
+		}
+	}
+	
+	/**
+	 * @return a read-only view of the rewards; {@link #addUserReward(UserReward)} is the only way to add one, so the
+	 * rewards by attraction and the points total stay in step
+	 */
 	public List<UserReward> getUserRewards() {
-		return userRewards;
+		return userRewardsView;
 	}
 	
 	public UserPreferences getUserPreferences() {
@@ -87,8 +199,15 @@ public class User {
 		this.userPreferences = userPreferences;
 	}
 
+	/**
+	 * @return the most recently added location, or null when there is none
+	 */
 	public VisitedLocation getLastVisitedLocation() {
-		return visitedLocations.get(visitedLocations.size() - 1);
+		return lastVisitedLocation;
+	}
+	
+	public void setChangeListener(UserChangeListener changeListener) {
+		this.changeListener = changeListener;
 	}
 	
 	public void setTripDeals(List<Provider> tripDeals) {
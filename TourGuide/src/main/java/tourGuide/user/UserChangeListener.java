@@ -0,0 +1,16 @@
+package tourGuide.user;
+
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Told about every change to a user's location history and rewards, e.g. to persist them.
+ * Calls are made while holding the user's lock, right after the change.
+ */
+public interface UserChangeListener {
+
+	void visitedLocationAdded(User user, VisitedLocation visitedLocation);
+
+	void visitedLocationsCleared(User user);
+
+	void userRewardAdded(User user, UserReward userReward);
+}
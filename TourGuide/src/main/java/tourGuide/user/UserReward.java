@@ -1,22 +1,62 @@
 package tourGuide.user;
 
+import java.util.Date;
+import java.util.UUID;
+
 import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 
+/**
+ * A reward stored as primitives: the visited location's coordinates and time, and the attraction's
+ * {@link AttractionRegistry} index. The gpsUtil objects are only rebuilt when asked for.
+ */
 public class UserReward {
 
-	public final VisitedLocation visitedLocation;
-	public final Attraction attraction;
+	private final UUID userId;
+	private final double visitedLatitude;
+	private final double visitedLongitude;
+	private final long visitedTime;
+	private final int attractionIndex;
 	private int rewardPoints;
 	public UserReward(VisitedLocation visitedLocation, Attraction attraction, int rewardPoints) {
-		this.visitedLocation = visitedLocation;
-		this.attraction = attraction;
+		this.userId = visitedLocation.userId;
+		this.visitedLatitude = visitedLocation.location.latitude;
+		this.visitedLongitude = visitedLocation.location.longitude;
+		this.visitedTime = visitedLocation.timeVisited.getTime();
+		this.attractionIndex = AttractionRegistry.getShared().register(attraction);
 		this.rewardPoints = rewardPoints;
 	}
 	
 	public UserReward(VisitedLocation visitedLocation, Attraction attraction) {
-		this.visitedLocation = visitedLocation;
-		this.attraction = attraction;
+		this(visitedLocation, attraction, 0);
+	}
+
+	/**
+	 * @return a new VisitedLocation on every call
+	 */
+	public VisitedLocation getVisitedLocation() {
+		return new VisitedLocation(userId, new Location(visitedLatitude, visitedLongitude), new Date(visitedTime));
+	}
+	
+	public UUID getUserId() {
+		return userId;
+	}
+	
+	public double getVisitedLatitude() {
+		return visitedLatitude;
+	}
+	
+	public double getVisitedLongitude() {
+		return visitedLongitude;
+	}
+	
+	public long getVisitedTime() {
+		return visitedTime;
+	}
+	
+	public Attraction getAttraction() {
+		return AttractionRegistry.getShared().get(attractionIndex);
 	}
 
 	public void setRewardPoints(int rewardPoints) {
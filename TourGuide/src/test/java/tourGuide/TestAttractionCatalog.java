@@ -0,0 +1,90 @@
+package tourGuide;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import tourGuide.geo.AttractionCatalog;
+import tourGuide.geo.AttractionIndex;
+import tourGuide.geo.DistanceMode;
+
+public class TestAttractionCatalog {
+	private volatile int attractionCount = 3;
+
+	@Test
+	public void refreshKeepsSnapshotWhenOnlyIdsChanged() {
+		AtomicInteger loads = new AtomicInteger();
+		AtomicInteger changes = new AtomicInteger();
+		AttractionCatalog catalog = new AttractionCatalog(() -> {
+			loads.incrementAndGet();
+			return attractions();
+		}, DistanceMode.LAW_OF_COSINES, changes::incrementAndGet);
+
+		AttractionIndex snapshot = catalog.getSnapshot();
+		assertSame(snapshot, catalog.getSnapshot());
+		assertEquals(1, loads.get());
+
+		assertFalse(catalog.refresh());
+		assertSame(snapshot, catalog.getSnapshot());
+		assertEquals(0, changes.get());
+	}
+
+	@Test
+	public void refreshSwapsInChangedAttractions() {
+		AtomicInteger changes = new AtomicInteger();
+		AttractionCatalog catalog = new AttractionCatalog(this::attractions, DistanceMode.LAW_OF_COSINES, changes::incrementAndGet);
+		AttractionIndex snapshot = catalog.getSnapshot();
+		Attraction first = snapshot.getAttractions().get(0);
+
+		attractionCount = 4;
+		assertTrue(catalog.refresh());
+
+		assertEquals(4, catalog.getSnapshot().size());
+		assertEquals(1, changes.get());
+		// attractions already known keep their instance, id included
+		assertSame(first, catalog.getSnapshot().getAttractions().get(0));
+		assertEquals(4, catalog.getSnapshot().within(new Location(40, -100), 1000).size());
+
+		catalog.setDistanceMode(DistanceMode.EQUIRECTANGULAR);
+		assertEquals(DistanceMode.EQUIRECTANGULAR, catalog.getSnapshot().getDistanceMode());
+		assertEquals(2, changes.get());
+	}
+
+	@Test
+	public void backgroundRefreshLoadsRightAway() throws InterruptedException {
+		AtomicInteger loads = new AtomicInteger();
+		AttractionCatalog catalog = new AttractionCatalog(() -> {
+			loads.incrementAndGet();
+			return attractions();
+		}, DistanceMode.LAW_OF_COSINES, () -> {});
+		catalog.startRefreshing(1, TimeUnit.HOURS);
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while(loads.get() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		catalog.stopRefreshing();
+		// already loaded by the refresher, so reading it does not load again
+		assertEquals(3, catalog.getSnapshot().size());
+		assertEquals(1, loads.get());
+	}
+
+	// a new list with new ids on every call, like gpsUtil
+	private List<Attraction> attractions() {
+		List<Attraction> attractions = new ArrayList<>();
+		for(int i = 0; i < attractionCount; i++) {
+			attractions.add(new Attraction("Catalog attraction " + i, "Kansas City", "MO", 39 + i * 0.1, -94.5 - i * 0.1));
+		}
+		return attractions;
+	}
+}
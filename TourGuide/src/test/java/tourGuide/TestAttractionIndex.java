@@ -0,0 +1,78 @@
+package tourGuide;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import tourGuide.geo.AttractionIndex;
+import tourGuide.geo.DistanceMode;
+import tourGuide.geo.GeoMath;
+import tourGuide.geo.GeoPoint;
+
+public class TestAttractionIndex {
+
+	@Test
+	public void withinMatchesLinearScan() {
+		List<Attraction> attractions = new GpsUtil().getAttractions();
+		AttractionIndex index = AttractionIndex.of(attractions);
+		Random random = new Random(42);
+
+		for(int i = 0; i < 1000; i++) {
+			Location location = new Location(random.nextDouble() * 170 - 85, random.nextDouble() * 360 - 180);
+			double miles = random.nextInt(2000);
+			List<String> expected = attractions.stream()
+					.filter(a -> GeoMath.distanceMiles(a, location) <= miles)
+					.map(a -> a.attractionName).sorted().collect(Collectors.toList());
+			List<String> actual = index.within(location, miles).stream()
+					.map(a -> a.attractionName).sorted().collect(Collectors.toList());
+			assertEquals(expected, actual);
+		}
+	}
+
+	@Test
+	public void pointOfReusesTheIndexedPoint() {
+		List<Attraction> attractions = new GpsUtil().getAttractions();
+		AttractionIndex index = AttractionIndex.of(attractions);
+		Attraction attraction = attractions.get(0);
+		Attraction unknown = new Attraction("Unknown", "Nowhere", "NA", 10, 20);
+		GeoPoint location = GeoPoint.of(new Location(33.8, -117.9));
+
+		assertSame(index.pointOf(attraction), index.pointOf(attraction));
+		assertEquals(GeoMath.distanceMiles(attraction, new Location(33.8, -117.9)),
+				DistanceMode.LAW_OF_COSINES.distanceMiles(index.pointOf(attraction), location), 1e-9);
+		assertEquals(10, index.pointOf(unknown).latitude, 0);
+		assertEquals(20, index.pointOf(unknown).longitude, 0);
+	}
+
+	@Test
+	public void nearestMatchesFullSort() {
+		List<Attraction> attractions = new GpsUtil().getAttractions();
+		AttractionIndex index = AttractionIndex.of(attractions);
+		Random random = new Random(42);
+
+		for(int i = 0; i < 1000; i++) {
+			Location location = new Location(random.nextDouble() * 170 - 85, random.nextDouble() * 360 - 180);
+			List<Attraction> expected = attractions.stream()
+					.sorted(Comparator.comparingDouble(a -> GeoMath.distanceMiles(a, location)))
+					.limit(5).collect(Collectors.toList());
+			assertEquals(expected, index.nearest(location, 5));
+		}
+	}
+
+	@Test
+	public void withinUnboundedRadiusReturnsEverything() {
+		List<Attraction> attractions = new GpsUtil().getAttractions();
+		AttractionIndex index = AttractionIndex.of(attractions);
+
+		assertEquals(attractions.size(), index.within(new Location(0, 0), Integer.MAX_VALUE).size());
+	}
+}
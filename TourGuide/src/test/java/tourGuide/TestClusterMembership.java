@@ -0,0 +1,93 @@
+package tourGuide;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import tourGuide.cluster.ClusterMembership;
+import tourGuide.cluster.HashRing;
+
+public class TestClusterMembership {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final List<UUID> userIds = IntStream.range(0, 30_000)
+			.mapToObj(i -> new UUID(new Random(i).nextLong(), new Random(-i - 1).nextLong()))
+			.collect(Collectors.toList());
+
+	@Test
+	public void ringSharesUsersEvenly() {
+		HashRing ring = new HashRing(Arrays.asList("node-a", "node-b", "node-c"));
+
+		Map<String, Integer> shares = new HashMap<>();
+		userIds.forEach(userId -> shares.merge(ring.owner(userId), 1, Integer::sum));
+
+		assertEquals(3, shares.size());
+		for(int share : shares.values()) {
+			assertTrue("Uneven share " + shares, share > 8_000 && share < 12_000);
+		}
+	}
+
+	@Test
+	public void addingANodeOnlyMovesUsersToIt() {
+		HashRing before = new HashRing(Arrays.asList("node-a", "node-b", "node-c"));
+		HashRing after = new HashRing(Arrays.asList("node-a", "node-b", "node-c", "node-d"));
+
+		int moved = 0;
+		for(UUID userId : userIds) {
+			String owner = after.owner(userId);
+			if(!owner.equals(before.owner(userId))) {
+				assertEquals("node-d", owner);
+				moved++;
+			}
+		}
+		assertTrue("Moved " + moved, moved > 6_000 && moved < 9_000);
+	}
+
+	@Test
+	public void membersFileIsReadAgainWhenItChanges() throws Exception {
+		Path membersFile = folder.newFile("members").toPath();
+		Files.write(membersFile, Arrays.asList("# tracking nodes", "node-a", "", "node-b"));
+		ClusterMembership membership = ClusterMembership.fromFile("node-a", membersFile, 10);
+		UUID movedUser = userIds.stream().filter(userId -> !membership.owns(userId)).findFirst().get();
+		assertEquals(Arrays.asList("node-a", "node-b"), membership.getRing().getNodes());
+
+		Files.write(membersFile, Arrays.asList("node-a"));
+		awaitNodes(membership, 1);
+
+		assertTrue(membership.owns(movedUser));
+		membership.close();
+	}
+
+	@Test
+	public void nodeMissingFromTheMembersOwnsNobody() {
+		ClusterMembership membership = ClusterMembership.fixed("node-c", Arrays.asList("node-a", "node-b"));
+
+		assertFalse(userIds.stream().anyMatch(membership::owns));
+		assertTrue(userIds.stream().allMatch(ClusterMembership.standalone()::owns));
+	}
+
+	private static void awaitNodes(ClusterMembership membership, int nodes) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while(membership.getRing().getNodes().size() != nodes && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(nodes, membership.getRing().getNodes().size());
+	}
+}
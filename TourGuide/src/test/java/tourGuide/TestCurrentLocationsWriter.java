@@ -0,0 +1,68 @@
+package tourGuide;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.jsoniter.JsonIterator;
+import com.jsoniter.any.Any;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import tourGuide.json.CurrentLocationsWriter;
+import tourGuide.user.User;
+
+public class TestCurrentLocationsWriter {
+
+	@Test
+	public void writesLastLocationOfEachTrackedUser() throws IOException {
+		List<User> users = new ArrayList<>();
+		for(int i = 0; i < 3; i++) {
+			User user = new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com");
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(10, 20), new Date()));
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(74.84371, -48.188821 + i), new Date()));
+			users.add(user);
+		}
+		users.add(new User(UUID.randomUUID(), "untracked", "000", "untracked@tourGuide.com"));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int written = CurrentLocationsWriter.write(users, out);
+
+		Map<String, Any> locations = JsonIterator.deserialize(new String(out.toByteArray(), StandardCharsets.UTF_8)).asMap();
+		assertEquals(3, written);
+		assertEquals(3, locations.size());
+		for(int i = 0; i < 3; i++) {
+			Any location = locations.get(users.get(i).getUserId().toString());
+			assertEquals(74.84371, location.toDouble("latitude"), 1e-6);
+			assertEquals(-48.188821 + i, location.toDouble("longitude"), 1e-6);
+		}
+	}
+
+	@Test
+	public void writesOnlyTheGivenUsers() throws IOException {
+		List<User> users = new ArrayList<>();
+		for(int i = 0; i < 5; i++) {
+			User user = new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com");
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(i, i), new Date()));
+			users.add(user);
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int written = CurrentLocationsWriter.write(users.subList(1, 3), out);
+
+		Map<String, Any> locations = JsonIterator.deserialize(new String(out.toByteArray(), StandardCharsets.UTF_8)).asMap();
+		assertEquals(2, written);
+		assertEquals(2, locations.size());
+		assertEquals(1.0, locations.get(users.get(1).getUserId().toString()).toDouble("latitude"), 1e-6);
+		assertEquals(2.0, locations.get(users.get(2).getUserId().toString()).toDouble("latitude"), 1e-6);
+	}
+}
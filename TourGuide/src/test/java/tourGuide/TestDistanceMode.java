@@ -0,0 +1,67 @@
+package tourGuide;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import tourGuide.geo.DistanceMode;
+import tourGuide.geo.GeoMath;
+import tourGuide.geo.GeoPoint;
+
+public class TestDistanceMode {
+
+	@Test
+	public void lawOfCosinesMatchesGeoMath() {
+		Random random = new Random(42);
+		for(int i = 0; i < 10000; i++) {
+			GeoPoint p1 = randomPoint(random);
+			GeoPoint p2 = randomPoint(random);
+			assertEquals(GeoMath.distanceMiles(p1.latitude, p1.longitude, p2.latitude, p2.longitude),
+					DistanceMode.LAW_OF_COSINES.distanceMiles(p1, p2), 0);
+		}
+	}
+
+	@Test
+	public void modesAgreeOverProximityDistances() {
+		Random random = new Random(42);
+		for(int i = 0; i < 10000; i++) {
+			GeoPoint p1 = GeoPoint.of(random.nextDouble() * 120 - 60, random.nextDouble() * 360 - 180);
+			GeoPoint p2 = GeoPoint.of(p1.latitude + random.nextDouble() * 4 - 2, p1.longitude + random.nextDouble() * 4 - 2);
+			double exact = DistanceMode.LAW_OF_COSINES.distanceMiles(p1, p2);
+			assertEquals(exact, DistanceMode.HAVERSINE.distanceMiles(p1, p2), 1e-6);
+			assertEquals(exact, DistanceMode.EQUIRECTANGULAR.distanceMiles(p1, p2), exact * 0.01);
+		}
+	}
+
+	@Test
+	public void isWithinMatchesDistance() {
+		Random random = new Random(42);
+		for(DistanceMode mode : DistanceMode.values()) {
+			for(int i = 0; i < 10000; i++) {
+				GeoPoint p1 = randomPoint(random);
+				GeoPoint p2 = GeoPoint.of(p1.latitude + random.nextDouble() * 10 - 5, p1.longitude + random.nextDouble() * 10 - 5);
+				double distance = mode.distanceMiles(p1, p2);
+				// radii right at, just inside and just outside the distance exercise the exact fallback
+				for(double miles : new double[] { distance, Math.nextDown(distance), distance + 1e-6, distance - 1e-6, random.nextDouble() * 400 }) {
+					assertEquals(distance <= miles, mode.isWithin(p1, p2, miles));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void isWithinAcrossTheAntimeridian() {
+		GeoPoint west = GeoPoint.of(10, 179.9);
+		GeoPoint east = GeoPoint.of(10, -179.9);
+		for(DistanceMode mode : DistanceMode.values()) {
+			assertTrue(mode.isWithin(west, east, 20));
+		}
+	}
+
+	private static GeoPoint randomPoint(Random random) {
+		return GeoPoint.of(random.nextDouble() * 170 - 85, random.nextDouble() * 360 - 180);
+	}
+}
@@ -0,0 +1,80 @@
+package tourGuide;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import tourGuide.cache.ExpiringCache;
+
+public class TestExpiringCache {
+
+	@Test
+	public void cachesUntilTtlExpires() throws InterruptedException {
+		ExpiringCache<String, Integer> cache = new ExpiringCache<>(10, 50, TimeUnit.MILLISECONDS, false);
+		AtomicInteger loads = new AtomicInteger();
+
+		cache.get("a", k -> loads.incrementAndGet());
+		cache.get("a", k -> loads.incrementAndGet());
+		assertEquals(1, loads.get());
+		assertEquals(1, cache.getHitCount());
+
+		TimeUnit.MILLISECONDS.sleep(60);
+		cache.get("a", k -> loads.incrementAndGet());
+		assertEquals(2, loads.get());
+		assertEquals(1, cache.getEvictionCount());
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsedBeyondMaxSize() {
+		ExpiringCache<String, Integer> cache = new ExpiringCache<>(2, 1, TimeUnit.HOURS, false);
+		AtomicInteger loads = new AtomicInteger();
+
+		cache.get("a", k -> loads.incrementAndGet());
+		cache.get("b", k -> loads.incrementAndGet());
+		cache.get("a", k -> loads.incrementAndGet());
+		cache.get("c", k -> loads.incrementAndGet());
+		cache.get("a", k -> loads.incrementAndGet());
+
+		assertEquals(3, loads.get());
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+	}
+
+	@Test
+	public void coalescesConcurrentMisses() {
+		ExpiringCache<String, Integer> cache = new ExpiringCache<>(10, 1, TimeUnit.HOURS, true);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+
+		List<CompletableFuture<Integer>> lookups = new ArrayList<>();
+		for(int i = 0; i < 8; i++) {
+			lookups.add(CompletableFuture.supplyAsync(() -> cache.get("a", k -> {
+				loads.incrementAndGet();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return 42;
+			}), executor));
+		}
+		while(cache.getMissCount() + cache.getHitCount() < lookups.size()) {
+			Thread.yield();
+		}
+		release.countDown();
+
+		lookups.forEach(f -> assertEquals(Integer.valueOf(42), f.join()));
+		executor.shutdown();
+		assertEquals(1, loads.get());
+	}
+}
@@ -0,0 +1,107 @@
+package tourGuide;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import tourGuide.user.HistoryRetentionPolicy;
+import tourGuide.user.LocationHistory;
+import tourGuide.user.User;
+
+public class TestLocationHistory {
+
+	@Test
+	public void keepsOnlyTheLastPointsBeyondCapacity() {
+		LocationHistory history = new LocationHistory(UUID.randomUUID(), new HistoryRetentionPolicy(4, 0, 0, 0));
+		long now = System.currentTimeMillis();
+		for(int i = 0; i < 10; i++) {
+			history.append(i, i, now + i);
+		}
+
+		List<VisitedLocation> visitedLocations = history.toVisitedLocations();
+		assertEquals(4, visitedLocations.size());
+		assertEquals(6, visitedLocations.get(0).location.latitude, 0);
+		assertEquals(9, visitedLocations.get(3).location.latitude, 0);
+		assertEquals(10, history.getSequence());
+	}
+
+	@Test
+	public void sinceReturnsOnlyNewerPoints() {
+		LocationHistory history = new LocationHistory(UUID.randomUUID(), new HistoryRetentionPolicy(4, 0, 0, 0));
+		long now = System.currentTimeMillis();
+		for(int i = 0; i < 3; i++) {
+			history.append(i, i, now);
+		}
+		long sequence = history.getSequence();
+		for(int i = 3; i < 6; i++) {
+			history.append(i, i, now);
+		}
+
+		List<VisitedLocation> newer = history.since(sequence);
+		assertEquals(3, newer.size());
+		assertEquals(3, newer.get(0).location.latitude, 0);
+		assertEquals(0, history.since(history.getSequence()).size());
+	}
+
+	@Test
+	public void downsamplesOldPointsWhenFull() {
+		LocationHistory history = new LocationHistory(UUID.randomUUID(),
+				new HistoryRetentionPolicy(8, 0, TimeUnit.DAYS.toMillis(1), TimeUnit.HOURS.toMillis(1)));
+		long twoDaysAgo = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2);
+		long hourStart = twoDaysAgo - twoDaysAgo % TimeUnit.HOURS.toMillis(1);
+		// six points within the same hour two days ago, then two recent points
+		for(int i = 0; i < 6; i++) {
+			history.append(i, i, hourStart + TimeUnit.MINUTES.toMillis(5 * i));
+		}
+		history.append(10, 10, System.currentTimeMillis());
+		history.append(11, 11, System.currentTimeMillis());
+		history.append(12, 12, System.currentTimeMillis());
+
+		List<VisitedLocation> visitedLocations = history.toVisitedLocations();
+		assertEquals(4, visitedLocations.size());
+		assertEquals(0, visitedLocations.get(0).location.latitude, 0);
+		assertEquals(12, visitedLocations.get(3).location.latitude, 0);
+	}
+
+	@Test
+	public void restoreKeepsTheNewestPointsWithinCapacity() {
+		LocationHistory history = new LocationHistory(UUID.randomUUID(), new HistoryRetentionPolicy(4, 0, 0, 0));
+		long now = System.currentTimeMillis();
+		double[] latitudes = new double[16];
+		double[] longitudes = new double[16];
+		long[] times = new long[16];
+		for(int i = 0; i < 10; i++) {
+			latitudes[i] = i;
+			longitudes[i] = i;
+			times[i] = now + i;
+		}
+
+		history.restore(latitudes, longitudes, times, 10);
+		history.append(10, 10, now + 10);
+
+		List<VisitedLocation> visitedLocations = history.toVisitedLocations();
+		assertEquals(4, visitedLocations.size());
+		assertEquals(7, visitedLocations.get(0).location.latitude, 0);
+		assertEquals(10, visitedLocations.get(3).location.latitude, 0);
+	}
+
+	@Test
+	public void lastVisitedLocationIsTheLatestAdded() {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		VisitedLocation first = new VisitedLocation(user.getUserId(), new Location(1, 1), new Date());
+		VisitedLocation second = new VisitedLocation(user.getUserId(), new Location(2, 2), new Date());
+		user.addToVisitedLocations(first);
+		user.addToVisitedLocations(second);
+
+		assertSame(second, user.getLastVisitedLocation());
+		assertEquals(2, user.getVisitedLocationCount());
+	}
+}
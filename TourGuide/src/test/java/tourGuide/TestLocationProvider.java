@@ -0,0 +1,110 @@
+package tourGuide;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.time.StopWatch;
+import org.junit.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import tourGuide.execution.ExecutionMode;
+import tourGuide.location.GpsUtilLocationProvider;
+import tourGuide.location.LocationProvider;
+import tourGuide.location.SimulatedLocationProvider;
+
+public class TestLocationProvider {
+
+	@Test
+	public void gpsUtilBatchReturnsEachUsersOwnLocation() {
+		LocationProvider locationProvider = new GpsUtilLocationProvider(new GpsUtil());
+		List<UUID> userIds = randomUserIds(20);
+
+		Map<UUID, VisitedLocation> visitedLocations = locationProvider.getUserLocations(userIds);
+
+		assertEquals(userIds.size(), visitedLocations.size());
+		userIds.forEach(userId -> assertEquals(userId, visitedLocations.get(userId).userId));
+	}
+
+	@Test
+	public void gpsUtilBatchLeavesOutFailedLookups() {
+		List<UUID> userIds = randomUserIds(20);
+		List<UUID> failingUserIds = userIds.subList(0, 2);
+		GpsUtil gpsUtil = new GpsUtil() {
+			@Override
+			public VisitedLocation getUserLocation(UUID userId) {
+				if(failingUserIds.contains(userId)) {
+					throw new IllegalStateException("gpsUtil down for " + userId);
+				}
+				return new VisitedLocation(userId, new Location(10, 20), new Date());
+			}
+		};
+		LocationProvider locationProvider = new GpsUtilLocationProvider(gpsUtil);
+
+		Map<UUID, VisitedLocation> visitedLocations = locationProvider.getUserLocations(userIds);
+
+		assertEquals(18, visitedLocations.size());
+		failingUserIds.forEach(userId -> assertFalse(visitedLocations.containsKey(userId)));
+		userIds.subList(2, 20).forEach(userId -> assertEquals(userId, visitedLocations.get(userId).userId));
+	}
+
+	@Test
+	public void gpsUtilBatchRunsAtMostPoolSizeLookupsAtOnce() {
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		GpsUtil gpsUtil = new GpsUtil() {
+			@Override
+			public VisitedLocation getUserLocation(UUID userId) {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					running.decrementAndGet();
+				}
+				return new VisitedLocation(userId, new Location(10, 20), new Date());
+			}
+		};
+		LocationProvider locationProvider = new GpsUtilLocationProvider(gpsUtil, 4, ExecutionMode.PLATFORM);
+
+		Map<UUID, VisitedLocation> visitedLocations = locationProvider.getUserLocations(randomUserIds(40));
+
+		assertEquals(40, visitedLocations.size());
+		assertTrue(maxRunning.get() <= 4);
+	}
+
+	@Test
+	public void simulatedBatchWaitsOnceForTheWholeBatch() {
+		LocationProvider locationProvider = new SimulatedLocationProvider(100, 0, TimeUnit.MILLISECONDS);
+		List<UUID> userIds = randomUserIds(50);
+
+		StopWatch stopWatch = new StopWatch();
+		stopWatch.start();
+		Map<UUID, VisitedLocation> visitedLocations = locationProvider.getUserLocations(userIds);
+		stopWatch.stop();
+
+		assertEquals(userIds.size(), visitedLocations.size());
+		userIds.forEach(userId -> assertEquals(userId, visitedLocations.get(userId).userId));
+		// 50 lookups one after the other would take 5 seconds
+		assertTrue(stopWatch.getTime() < 2000);
+	}
+
+	private static List<UUID> randomUserIds(int count) {
+		List<UUID> userIds = new ArrayList<>(count);
+		for(int i = 0; i < count; i++) {
+			userIds.add(UUID.randomUUID());
+		}
+		return userIds;
+	}
+}
@@ -0,0 +1,123 @@
+package tourGuide;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.jsoniter.JsonIterator;
+
+/**
+ * Starts the boot jar with java -jar, the way it is deployed. Its nested jar class loading differs from the flat test
+ * classpath, so this catches what the other tests cannot. Run with the packagedJarTest task, which builds the jar
+ * and passes its path in the tourguide.bootJar system property. One application serves every test in the class.
+ */
+public class TestPackagedApplication {
+	private static final long startupTimeoutMillis = 120_000;
+	private static final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+	private static Process application;
+	private static Path log;
+	private static int port;
+
+	@BeforeClass
+	public static void startApplication() throws IOException, InterruptedException {
+		String bootJar = System.getProperty("tourguide.bootJar");
+		assertNotNull("tourguide.bootJar is not set, run the packagedJarTest task", bootJar);
+		try(ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		log = Files.createTempFile("tourGuide", ".log");
+		String java = ProcessHandle.current().info().command().orElse("java");
+		application = new ProcessBuilder(List.of(java, "-jar", new File(bootJar).getAbsolutePath(),
+				"--server.port=" + port, "--tourguide.persistence.enabled=false"))
+			.redirectErrorStream(true)
+			.redirectOutput(log.toFile())
+			.start();
+		awaitStarted();
+	}
+
+	@AfterClass
+	public static void stopApplication() throws InterruptedException {
+		if(application != null) {
+			application.destroy();
+			if(!application.waitFor(10, TimeUnit.SECONDS)) {
+				application.destroyForcibly();
+			}
+		}
+	}
+
+	@Test
+	public void startsFromTheBootJar() throws IOException, InterruptedException {
+		HttpResponse<String> response = get("/");
+
+		assertEquals(200, response.statusCode());
+		assertEquals("Greetings from TourGuide!", response.body());
+	}
+
+	@Test
+	public void servesEveryEndpoint() throws IOException, InterruptedException {
+		HttpResponse<String> location = get("/getLocation?userName=internalUser0");
+		HttpResponse<String> nearbyAttractions = get("/getNearbyAttractions?userName=internalUser0");
+		HttpResponse<String> rewards = get("/getRewards?userName=internalUser0");
+		HttpResponse<String> currentLocations = get("/getAllCurrentLocations?limit=10");
+		HttpResponse<String> tripDeals = get("/getTripDeals?userName=internalUser0");
+		HttpResponse<String> health = get("/actuator/health");
+
+		assertOk(location);
+		assertTrue(JsonIterator.deserialize(location.body()).get("latitude").toDouble() != 0);
+		assertOk(nearbyAttractions);
+		assertEquals(5, JsonIterator.deserialize(nearbyAttractions.body()).size());
+		assertOk(rewards);
+		assertTrue(rewards.body().startsWith("["));
+		assertOk(currentLocations);
+		assertEquals(10, JsonIterator.deserialize(currentLocations.body()).size());
+		assertTrue(currentLocations.headers().firstValue("X-Next-After").isPresent());
+		assertOk(tripDeals);
+		assertTrue(JsonIterator.deserialize(tripDeals.body()).size() > 0);
+		assertOk(health);
+	}
+
+	private static void assertOk(HttpResponse<String> response) {
+		assertEquals(response.uri() + " answered " + response.body(), 200, response.statusCode());
+	}
+
+	private static void awaitStarted() throws IOException, InterruptedException {
+		long deadline = System.currentTimeMillis() + startupTimeoutMillis;
+		while(System.currentTimeMillis() < deadline) {
+			if(!application.isAlive()) {
+				fail("Application exited with " + application.exitValue() + ":\n" + Files.readString(log));
+			}
+			try {
+				get("/");
+				return;
+			} catch (IOException e) {
+				Thread.sleep(500);
+			}
+		}
+		fail("Application did not start within " + startupTimeoutMillis + " ms:\n" + Files.readString(log));
+	}
+
+	private static HttpResponse<String> get(String path) throws IOException, InterruptedException {
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+				.timeout(Duration.ofSeconds(30))
+				.build();
+		return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+	}
+}
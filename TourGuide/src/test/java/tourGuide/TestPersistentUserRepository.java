@@ -0,0 +1,135 @@
+package tourGuide;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import tourGuide.persistence.PersistentUserRepository;
+import tourGuide.user.User;
+import tourGuide.user.UserReward;
+
+public class TestPersistentUserRepository {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void reopenRestoresUsersLocationsAndRewards() throws IOException {
+		Path directory = folder.getRoot().toPath();
+		PersistentUserRepository repository = PersistentUserRepository.open(directory);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		repository.addUser(user);
+		// changes made after the user was added are logged too
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), new Location(33.8, -117.9), new Date());
+		user.addToVisitedLocations(visitedLocation);
+		Attraction attraction = new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008);
+		user.addUserReward(new UserReward(visitedLocation, attraction, 42));
+		repository.close();
+
+		repository = PersistentUserRepository.open(directory);
+		User restored = repository.getUser("jon");
+		assertEquals(1, repository.size());
+		assertEquals(user.getUserId(), restored.getUserId());
+		assertEquals("jon@tourGuide.com", restored.getEmailAddress());
+		assertEquals(1, restored.getVisitedLocations().size());
+		assertEquals(visitedLocation.timeVisited, restored.getLastVisitedLocation().timeVisited);
+		assertEquals(-117.9, restored.getLastVisitedLocation().location.longitude, 0);
+		assertEquals(42, restored.getRewardPointsTotal());
+		assertTrue(restored.hasRewardForAttraction("Disneyland"));
+		repository.close();
+	}
+
+	@Test
+	public void compactionKeepsStateAndDropsOldSegments() throws IOException {
+		Path directory = folder.getRoot().toPath();
+		PersistentUserRepository repository = PersistentUserRepository.open(directory);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		repository.addUser(user);
+		for(int i = 0; i < 100; i++) {
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(i, i), new Date()));
+		}
+		user.clearVisitedLocations();
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(1, 2), new Date()));
+		long sizeBefore = repository.getLogSize();
+
+		repository.compact();
+
+		assertTrue(repository.getLogSize() < sizeBefore);
+		assertEquals(1, segmentFiles(directory));
+		repository.close();
+
+		repository = PersistentUserRepository.open(directory);
+		assertEquals(1, repository.getUser("jon").getVisitedLocations().size());
+		repository.close();
+	}
+
+	@Test
+	public void recordsRollOverIntoNewSegments() throws IOException {
+		Path directory = folder.getRoot().toPath();
+		PersistentUserRepository repository = PersistentUserRepository.open(directory, 4096);
+		for(int i = 0; i < 100; i++) {
+			User user = new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com");
+			repository.addUser(user);
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(i, i), new Date()));
+		}
+		repository.close();
+
+		assertTrue(segmentFiles(directory) > 1);
+		repository = PersistentUserRepository.open(directory, 4096);
+		assertEquals(100, repository.size());
+		assertEquals(1, repository.getUser("jon99").getVisitedLocations().size());
+		repository.close();
+	}
+
+	@Test
+	public void reopenRestoresHistoryInOrderAcrossSegments() throws IOException {
+		Path directory = folder.getRoot().toPath();
+		PersistentUserRepository repository = PersistentUserRepository.open(directory, 4096);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		repository.addUser(user);
+		for(int i = 0; i < 5; i++) {
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(-i, -i), new Date()));
+		}
+		user.clearVisitedLocations();
+		for(int i = 0; i < 200; i++) {
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(i, i), new Date()));
+		}
+		repository.close();
+
+		assertTrue(segmentFiles(directory) > 1);
+		repository = PersistentUserRepository.open(directory, 4096);
+		User restored = repository.getUser("jon");
+		List<VisitedLocation> visitedLocations = restored.getVisitedLocations();
+		assertEquals(200, visitedLocations.size());
+		for(int i = 0; i < 200; i++) {
+			assertEquals(i, visitedLocations.get(i).location.latitude, 0);
+		}
+		assertEquals(199, restored.getLastVisitedLocation().location.latitude, 0);
+		// the restored user keeps logging its changes
+		restored.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(200, 200), new Date()));
+		repository.close();
+
+		repository = PersistentUserRepository.open(directory, 4096);
+		assertEquals(201, repository.getUser("jon").getVisitedLocationCount());
+		repository.close();
+	}
+
+	private static long segmentFiles(Path directory) throws IOException {
+		try(Stream<Path> files = Files.list(directory)) {
+			return files.filter(file -> file.getFileName().toString().endsWith(".tgs")).count();
+		}
+	}
+}
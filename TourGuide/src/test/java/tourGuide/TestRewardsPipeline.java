@@ -0,0 +1,70 @@
+package tourGuide;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+import rewardCentral.RewardCentral;
+import tourGuide.rewards.RewardsPipeline;
+import tourGuide.service.RewardsService;
+import tourGuide.user.User;
+
+public class TestRewardsPipeline {
+
+	@Test
+	public void publishedUsersAreRewarded() throws InterruptedException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		Attraction attraction = gpsUtil.getAttractions().get(0);
+		// a queue smaller than the number of users makes publishing wait on the consumers
+		RewardsPipeline rewardsPipeline = new RewardsPipeline(rewardsService, 4, 4, 2);
+		rewardsPipeline.start();
+
+		List<User> users = new ArrayList<>();
+		for(int i = 0; i < 20; i++) {
+			User user = new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com");
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+			users.add(user);
+			rewardsPipeline.publish(user);
+		}
+		assertTrue(rewardsPipeline.awaitIdle(30, TimeUnit.SECONDS));
+		rewardsPipeline.stop();
+
+		users.forEach(u -> assertEquals(1, u.getUserRewards().size()));
+		assertEquals(20, rewardsPipeline.getCompletedCount());
+		assertEquals(0, rewardsPipeline.getLag());
+	}
+
+	@Test
+	public void userAlreadyQueuedIsNotQueuedAgain() throws InterruptedException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		List<Attraction> attractions = gpsUtil.getAttractions();
+		RewardsPipeline rewardsPipeline = new RewardsPipeline(rewardsService);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		for(int i = 0; i < 3; i++) {
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attractions.get(i), new Date()));
+			rewardsPipeline.publish(user);
+		}
+		assertEquals(1, rewardsPipeline.getQueueDepth());
+		assertEquals(1, rewardsPipeline.getLag());
+
+		rewardsPipeline.start();
+		assertTrue(rewardsPipeline.awaitIdle(30, TimeUnit.SECONDS));
+		rewardsPipeline.stop();
+
+		assertEquals(3, user.getUserRewards().size());
+		assertEquals(1, rewardsPipeline.getCompletedCount());
+	}
+}
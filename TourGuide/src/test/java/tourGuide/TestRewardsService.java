@@ -2,19 +2,27 @@ package tourGuide;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
-import org.junit.Ignore;
 import org.junit.Test;
 
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import rewardCentral.RewardCentral;
+import tourGuide.geo.AttractionIndex;
 import tourGuide.helper.InternalTestHelper;
+import tourGuide.location.SimulatedLocationProvider;
 import tourGuide.service.RewardsService;
+import tourGuide.service.RewardsService.BulkRewardsResult;
 import tourGuide.service.TourGuideService;
 import tourGuide.user.User;
 import tourGuide.user.UserReward;
@@ -22,7 +30,7 @@ import tourGuide.user.UserReward;
 public class TestRewardsService {
 
 	@Test
-	public void userGetRewards() {
+	public void userGetRewards() throws InterruptedException {
 		GpsUtil gpsUtil = new GpsUtil();
 		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
 
@@ -33,11 +41,115 @@ public class TestRewardsService {
 		Attraction attraction = gpsUtil.getAttractions().get(0);
 		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
 		tourGuideService.trackUserLocation(user);
+		assertTrue(tourGuideService.rewardsPipeline.awaitIdle(10, TimeUnit.SECONDS));
 		List<UserReward> userRewards = user.getUserRewards();
 		tourGuideService.tracker.stopTracking();
 		assertTrue(userRewards.size() == 1);
 	}
 	
+	@Test
+	public void catalogRefreshDuringCalculationIsNotMissed() {
+		Attraction existing = new Attraction("Existing", "Anaheim", "CA", 10, 10);
+		Attraction added = new Attraction("Added", "Anaheim", "CA", 33.817595, -117.922008);
+		List<List<Attraction>> catalog = new ArrayList<>();
+		catalog.add(Arrays.asList(existing));
+		SimulatedLocationProvider locationProvider = new SimulatedLocationProvider(0, 0, TimeUnit.MILLISECONDS) {
+			@Override
+			public List<Attraction> getAttractions() {
+				return catalog.get(0);
+			}
+		};
+		AtomicInteger refreshes = new AtomicInteger();
+		RewardsService rewardsService = new RewardsService(locationProvider, new RewardCentral()) {
+			@Override
+			public AttractionIndex getAttractionIndex() {
+				AttractionIndex index = super.getAttractionIndex();
+				// the background refresh lands right after the calculation has read the index
+				if(refreshes.getAndIncrement() == 0) {
+					catalog.set(0, Arrays.asList(existing, added));
+					getAttractionCatalog().refresh();
+				}
+				return index;
+			}
+		};
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(added.latitude, added.longitude), new Date()));
+
+		rewardsService.calculateRewards(user);
+		rewardsService.calculateRewards(user);
+
+		assertTrue(user.hasRewardForAttraction("Added"));
+	}
+	
+	@Test
+	public void incrementalRewardsMatchFullRecomputation() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		List<Attraction> attractions = gpsUtil.getAttractions();
+
+		User incremental = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		User full = new User(UUID.randomUUID(), "jon2", "000", "jon2@tourGuide.com");
+		for(int i = 0; i < 3; i++) {
+			VisitedLocation visitedLocation = new VisitedLocation(incremental.getUserId(), attractions.get(i), new Date());
+			incremental.addToVisitedLocations(visitedLocation);
+			full.addToVisitedLocations(visitedLocation);
+			rewardsService.calculateRewards(incremental);
+		}
+		// revisiting an attraction must not reward it twice
+		incremental.addToVisitedLocations(new VisitedLocation(incremental.getUserId(), attractions.get(0), new Date()));
+		rewardsService.calculateRewards(incremental);
+		rewardsService.calculateRewards(full);
+
+		assertEquals(rewardedAttractionNames(full), rewardedAttractionNames(incremental));
+		assertEquals(full.getUserRewards().size(), incremental.getUserRewards().size());
+	}
+
+	@Test
+	public void bulkCalculateRewards() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		Attraction attraction = gpsUtil.getAttractions().get(0);
+
+		List<User> users = new ArrayList<>();
+		for(int i = 0; i < 50; i++) {
+			User user = new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com");
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+			users.add(user);
+		}
+		List<User> batch = new ArrayList<>(users);
+		batch.addAll(users.subList(0, 10));
+		AtomicInteger lastProgress = new AtomicInteger();
+		BulkRewardsResult result = rewardsService.calculateRewards(batch, 8,
+				(completed, total) -> lastProgress.accumulateAndGet(completed, Math::max));
+
+		users.forEach(u -> assertEquals(1, u.getUserRewards().size()));
+		assertEquals(50, result.getUserCount());
+		assertEquals(0, result.getFailedCount());
+		assertEquals(50, lastProgress.get());
+	}
+
+	private List<String> rewardedAttractionNames(User user) {
+		return user.getUserRewards().stream().map(r -> r.getAttraction().attractionName).sorted().collect(Collectors.toList());
+	}
+
+	@Test
+	public void userRewardsOnlyChangeThroughAddUserReward() {
+		Attraction attraction = new GpsUtil().getAttractions().get(0);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), attraction, new Date());
+		user.addUserReward(new UserReward(visitedLocation, attraction, 100));
+
+		try {
+			user.getUserRewards().clear();
+			fail("the rewards list must be read-only");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		assertEquals(1, user.getUserRewards().size());
+		assertEquals(100, user.getRewardPointsTotal());
+		assertTrue(user.hasRewardForAttraction(attraction.attractionName));
+	}
+
 	@Test
 	public void isWithinAttractionProximity() {
 		GpsUtil gpsUtil = new GpsUtil();
@@ -46,7 +158,6 @@ public class TestRewardsService {
 		assertTrue(rewardsService.isWithinAttractionProximity(attraction, attraction));
 	}
 	
-	@Ignore // Needs fixed - can throw ConcurrentModificationException
 	@Test
 	public void nearAllAttractions() {
 		GpsUtil gpsUtil = new GpsUtil();
@@ -0,0 +1,53 @@
+package tourGuide;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.jsoniter.JsonIterator;
+import com.jsoniter.any.Any;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import tourGuide.json.RewardsWriter;
+import tourGuide.user.UserReward;
+
+public class TestRewardsWriter {
+
+	@Test
+	public void writesRewardsFromCompactFields() {
+		UUID userId = UUID.randomUUID();
+		VisitedLocation visitedLocation = new VisitedLocation(userId, new Location(33.8, -117.9), new Date(1_000_000));
+		Attraction attraction = new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008);
+		UserReward userReward = new UserReward(visitedLocation, attraction, 42);
+
+		Any rewards = JsonIterator.deserialize(RewardsWriter.toJson(Arrays.asList(userReward)));
+
+		assertEquals(1, rewards.size());
+		Any reward = rewards.get(0);
+		assertEquals(userId.toString(), reward.toString("visitedLocation", "userId"));
+		assertEquals(33.8, reward.toDouble("visitedLocation", "location", "latitude"), 1e-9);
+		assertEquals(-117.9, reward.toDouble("visitedLocation", "location", "longitude"), 1e-9);
+		assertEquals(1_000_000, reward.toLong("visitedLocation", "timeVisited"));
+		assertEquals("Disneyland", reward.toString("attraction", "attractionName"));
+		assertEquals("Anaheim", reward.toString("attraction", "city"));
+		assertEquals(42, reward.toInt("rewardPoints"));
+	}
+
+	@Test
+	public void rewardsShareOneAttractionPerPlace() {
+		VisitedLocation visitedLocation = new VisitedLocation(UUID.randomUUID(), new Location(33.8, -117.9), new Date());
+		// gpsUtil gives the same attraction a new id on every call
+		UserReward first = new UserReward(visitedLocation, new Attraction("Legend Valley", "Thornville", "OH", 39.937778, -82.40667));
+		UserReward second = new UserReward(visitedLocation, new Attraction("Legend Valley", "Thornville", "OH", 39.937778, -82.40667));
+
+		assertSame(first.getAttraction(), second.getAttraction());
+		assertEquals(33.8, second.getVisitedLocation().location.latitude, 0);
+	}
+}
@@ -1,22 +1,42 @@
 package tourGuide;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 
-import org.junit.Ignore;
 import org.junit.Test;
 
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import rewardCentral.RewardCentral;
+import tourGuide.dto.NearbyAttraction;
 import tourGuide.helper.InternalTestHelper;
+import tourGuide.location.GpsUtilLocationProvider;
+import tourGuide.location.LocationProvider;
+import tourGuide.location.SimulatedLocationProvider;
+import tourGuide.repository.InMemoryUserRepository;
 import tourGuide.service.RewardsService;
 import tourGuide.service.TourGuideService;
+import tourGuide.service.TrackedLocation;
+import tourGuide.tracker.Tracker;
+import tourGuide.tracker.TrackingSchedule;
 import tourGuide.user.User;
+import tourGuide.user.UserReward;
 import tripPricer.Provider;
 
 public class TestTourGuideService {
@@ -56,6 +76,67 @@ public class TestTourGuideService {
 		assertEquals(user2, retrivedUser2);
 	}
 	
+	@Test
+	public void trackUserLocationIsTimed() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		Metrics.addRegistry(registry);
+		try {
+			GpsUtil gpsUtil = new GpsUtil();
+			RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+			InternalTestHelper.setInternalUserNumber(0);
+			TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+			tourGuideService.tracker.stopTracking();
+			
+			User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+			tourGuideService.trackUserLocation(user);
+			
+			assertTrue(registry.get("tourguide.tracking.user").timer().count() >= 1);
+			assertTrue(registry.get("tourguide.external.calls").tag("service", "gpsUtil").tag("operation", "getUserLocation").timer().count() >= 1);
+		} finally {
+			Metrics.removeRegistry(registry);
+		}
+	}
+	
+	@Test
+	public void seededInternalUsersAreReproducible() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(1000);
+		InternalTestHelper.setInternalUserSeed(42L);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		TourGuideService otherTourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		InternalTestHelper.setInternalUserSeed(null);
+		tourGuideService.tracker.stopTracking();
+		otherTourGuideService.tracker.stopTracking();
+		
+		assertEquals(1000, tourGuideService.getAllUsers().size());
+		for(User user : tourGuideService.getAllUsers()) {
+			User other = otherTourGuideService.getUser(user.getUserName());
+			assertEquals(user.getUserId(), other.getUserId());
+			// the tracker may already have added a location, so compare the generated history only
+			VisitedLocation generated = user.getVisitedLocations().get(0);
+			VisitedLocation otherGenerated = other.getVisitedLocations().get(0);
+			assertEquals(generated.location.latitude, otherGenerated.location.latitude, 0);
+			assertEquals(generated.location.longitude, otherGenerated.location.longitude, 0);
+		}
+	}
+	
+	@Test
+	public void internalUsersInitializedInBackground() throws InterruptedException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(1000);
+		TourGuideService tourGuideService = new TourGuideService(new GpsUtilLocationProvider(gpsUtil), rewardsService, new InMemoryUserRepository(), true);
+		tourGuideService.tracker.stopTracking();
+		
+		long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+		while(!tourGuideService.isInternalUsersInitialized() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertTrue(tourGuideService.isInternalUsersInitialized());
+		assertEquals(1000, tourGuideService.getAllUsers().size());
+	}
+	
 	@Test
 	public void getAllUsers() {
 		GpsUtil gpsUtil = new GpsUtil();
@@ -77,6 +158,27 @@ public class TestTourGuideService {
 		assertTrue(allUsers.contains(user2));
 	}
 	
+	@Test
+	public void pagesThroughUsersInUserIdOrderWhileUsersAreAdded() {
+		InMemoryUserRepository userRepository = new InMemoryUserRepository();
+		List<User> users = new ArrayList<>();
+		IntStream.range(0, 6).forEach(i -> users.add(new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com")));
+		users.forEach(userRepository::addUser);
+		users.sort((a, b) -> a.getUserId().compareTo(b.getUserId()));
+
+		List<User> firstPage = userRepository.getUsersAfter(null, 2);
+		// a user sorting before the cursor must not shift the next page
+		User added = new User(new UUID(Long.MIN_VALUE, 0), "added", "000", "added@tourGuide.com");
+		userRepository.addUser(added);
+		List<User> secondPage = userRepository.getUsersAfter(firstPage.get(1).getUserId(), 2);
+		List<User> rest = userRepository.getUsersAfter(secondPage.get(1).getUserId(), 0);
+
+		assertEquals(users.subList(0, 2), firstPage);
+		assertEquals(users.subList(2, 4), secondPage);
+		assertEquals(users.subList(4, 6), rest);
+		assertEquals(added, userRepository.getUsersAfter(null, 1).get(0));
+	}
+	
 	@Test
 	public void trackUser() {
 		GpsUtil gpsUtil = new GpsUtil();
@@ -91,8 +193,145 @@ public class TestTourGuideService {
 		
 		assertEquals(user.getUserId(), visitedLocation.userId);
 	}
-	
-	@Ignore // Not yet implemented
+
+	@Test
+	public void trackUserAsync() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		VisitedLocation visitedLocation = tourGuideService.trackUserLocationAsync(user).join();
+
+		tourGuideService.tracker.stopTracking();
+
+		assertEquals(user.getUserId(), visitedLocation.userId);
+		assertEquals(visitedLocation, user.getLastVisitedLocation());
+	}
+
+	@Test
+	public void trackUsersInBatch() {
+		LocationProvider locationProvider = new SimulatedLocationProvider(10, 5, TimeUnit.MILLISECONDS);
+		RewardsService rewardsService = new RewardsService(locationProvider, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(locationProvider, rewardsService, new InMemoryUserRepository());
+
+		List<User> users = new ArrayList<>();
+		IntStream.range(0, 10).forEach(i -> users.add(new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com")));
+		Map<UUID, VisitedLocation> visitedLocations = tourGuideService.trackUserLocations(users);
+
+		tourGuideService.tracker.stopTracking();
+
+		assertEquals(users.size(), visitedLocations.size());
+		users.forEach(u -> assertEquals(visitedLocations.get(u.getUserId()), u.getLastVisitedLocation()));
+	}
+
+	@Test
+	public void trackUserTellsAFallbackFromALookup() {
+		User found = new User(UUID.randomUUID(), "found", "000", "found@tourGuide.com");
+		User known = new User(UUID.randomUUID(), "known", "000", "known@tourGuide.com");
+		GpsUtil gpsUtil = new GpsUtil() {
+			@Override
+			public VisitedLocation getUserLocation(UUID userId) {
+				if(userId.equals(known.getUserId())) {
+					throw new IllegalStateException("gpsUtil down for " + userId);
+				}
+				return new VisitedLocation(userId, new Location(10, 20), new Date());
+			}
+		};
+		LocationProvider locationProvider = new GpsUtilLocationProvider(gpsUtil);
+		RewardsService rewardsService = new RewardsService(locationProvider, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(locationProvider, rewardsService, new InMemoryUserRepository());
+		VisitedLocation lastKnown = new VisitedLocation(known.getUserId(), new Location(10, 20), new Date());
+		known.addToVisitedLocations(lastKnown);
+
+		TrackedLocation lookedUp = tourGuideService.trackUser(found);
+		TrackedLocation fallback = tourGuideService.trackUser(known);
+
+		tourGuideService.tracker.stopTracking();
+
+		assertFalse(lookedUp.isFallback());
+		assertEquals(found.getLastVisitedLocation(), lookedUp.getVisitedLocation());
+		assertTrue(fallback.isFallback());
+		assertSame(lastKnown, fallback.getVisitedLocation());
+		assertEquals(1, known.getVisitedLocations().size());
+	}
+
+	@Test
+	public void failedLookupInBatchDoesNotFailTheOthers() {
+		User failing = new User(UUID.randomUUID(), "failing", "000", "failing@tourGuide.com");
+		User known = new User(UUID.randomUUID(), "known", "000", "known@tourGuide.com");
+		GpsUtil gpsUtil = new GpsUtil() {
+			@Override
+			public VisitedLocation getUserLocation(UUID userId) {
+				if(userId.equals(failing.getUserId()) || userId.equals(known.getUserId())) {
+					throw new IllegalStateException("gpsUtil down for " + userId);
+				}
+				return super.getUserLocation(userId);
+			}
+		};
+		LocationProvider locationProvider = new GpsUtilLocationProvider(gpsUtil);
+		RewardsService rewardsService = new RewardsService(locationProvider, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(locationProvider, rewardsService, new InMemoryUserRepository());
+		VisitedLocation lastKnown = new VisitedLocation(known.getUserId(), new Location(10, 20), new Date());
+		known.addToVisitedLocations(lastKnown);
+
+		List<User> users = new ArrayList<>();
+		IntStream.range(0, 10).forEach(i -> users.add(new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com")));
+		users.add(failing);
+		users.add(known);
+		Map<UUID, VisitedLocation> visitedLocations = tourGuideService.trackUserLocations(users);
+
+		tourGuideService.tracker.stopTracking();
+
+		assertEquals(11, visitedLocations.size());
+		assertNull(visitedLocations.get(failing.getUserId()));
+		assertSame(lastKnown, visitedLocations.get(known.getUserId()));
+		assertEquals(1, known.getVisitedLocations().size());
+	}
+
+	@Test
+	public void trackUsersInParallel() throws InterruptedException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+		List<User> users = new ArrayList<>();
+		IntStream.range(0, 10).forEach(i -> users.add(new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com")));
+		long passDuration = tourGuideService.tracker.trackUsers(users);
+
+		tourGuideService.tracker.stopTracking();
+
+		users.forEach(u -> assertEquals(1, u.getVisitedLocations().size()));
+		assertEquals(passDuration, tourGuideService.tracker.getLastPassDuration());
+		assertEquals(0, tourGuideService.tracker.getInFlightCount());
+	}
+
+	@Test
+	public void scheduledTrackingRecordsPasses() throws InterruptedException {
+		LocationProvider locationProvider = new SimulatedLocationProvider(0, 0, TimeUnit.MILLISECONDS);
+		RewardsService rewardsService = new RewardsService(locationProvider, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		InMemoryUserRepository userRepository = new InMemoryUserRepository();
+		TourGuideService tourGuideService = new TourGuideService(locationProvider, rewardsService, userRepository);
+		tourGuideService.tracker.stopTracking();
+		IntStream.range(0, 10).forEach(i -> userRepository.addUser(new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com")));
+
+		Tracker tracker = new Tracker(tourGuideService, 4, new TrackingSchedule(50, 100, 0.1, System::currentTimeMillis));
+		tracker.startTracking();
+		long deadline = System.currentTimeMillis() + 5000;
+		while(tracker.getLastPassDuration() < 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		tracker.stopTracking();
+
+		assertTrue(tracker.getLastPassDuration() >= 0);
+	}
+
 	@Test
 	public void getNearbyAttractions() {
 		GpsUtil gpsUtil = new GpsUtil();
@@ -110,6 +349,77 @@ public class TestTourGuideService {
 		assertEquals(5, attractions.size());
 	}
 	
+	@Test
+	public void getNearbyAttractionDetails() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		VisitedLocation visitedLocation = tourGuideService.trackUserLocation(user);
+		
+		List<NearbyAttraction> nearbyAttractions = tourGuideService.getNearbyAttractionDetails(user, visitedLocation).join();
+		double farthestNearby = nearbyAttractions.get(nearbyAttractions.size() - 1).distance;
+		
+		tourGuideService.tracker.stopTracking();
+		
+		assertEquals(5, nearbyAttractions.size());
+		for(int i = 1; i < nearbyAttractions.size(); i++) {
+			assertTrue(nearbyAttractions.get(i - 1).distance <= nearbyAttractions.get(i).distance);
+		}
+		for(Attraction attraction : gpsUtil.getAttractions()) {
+			boolean listed = nearbyAttractions.stream().anyMatch(a -> a.attractionName.equals(attraction.attractionName));
+			assertTrue(listed || rewardsService.getDistance(attraction, visitedLocation.location) >= farthestNearby);
+		}
+		nearbyAttractions.forEach(a -> assertEquals(visitedLocation.location.latitude, a.userLatitude, 0));
+	}
+	
+	@Test
+	public void getUserRewardPoints() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		List<Attraction> attractions = gpsUtil.getAttractions();
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), attractions.get(0), new Date());
+		for(int i = 0; i < 3; i++) {
+			user.addUserReward(new UserReward(visitedLocation, attractions.get(i), 100 * (i + 1)));
+		}
+		// a second reward for the same attraction is ignored
+		user.addUserReward(new UserReward(visitedLocation, attractions.get(0), 1000));
+		
+		tourGuideService.tracker.stopTracking();
+		
+		assertEquals(600, tourGuideService.getUserRewardPoints(user));
+		assertEquals(100, tourGuideService.getUserReward(user, attractions.get(0).attractionName).getRewardPoints());
+		assertNull(tourGuideService.getUserReward(user, attractions.get(3).attractionName));
+		assertEquals(3, tourGuideService.getUserRewards(user).size());
+	}
+	
+	@Test
+	public void tripDealsAreCachedUntilPreferencesChange() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		List<Provider> providers = tourGuideService.getTripDeals(user);
+		List<Provider> cachedProviders = tourGuideService.getTripDeals(user);
+		user.getUserPreferences().setNumberOfAdults(2);
+		List<Provider> requotedProviders = tourGuideService.getTripDeals(user);
+		
+		tourGuideService.tracker.stopTracking();
+		
+		assertSame(providers, cachedProviders);
+		assertNotSame(providers, requotedProviders);
+		assertSame(requotedProviders, user.getTripDeals());
+		assertEquals(1, tourGuideService.getTripDealsCache().getHitCount());
+	}
+	
 	public void getTripDeals() {
 		GpsUtil gpsUtil = new GpsUtil();
 		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
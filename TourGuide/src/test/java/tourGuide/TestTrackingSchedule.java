@@ -0,0 +1,115 @@
+package tourGuide;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import tourGuide.tracker.TrackingSchedule;
+import tourGuide.tracker.TrackingSchedule.ScheduledUser;
+import tourGuide.user.User;
+
+public class TestTrackingSchedule {
+	private final AtomicLong clock = new AtomicLong();
+	private final TrackingSchedule trackingSchedule = new TrackingSchedule(1000, 8000, 0.1, clock::get);
+
+	@Test
+	public void firstDueTimesAreSpreadOverTheInterval() throws InterruptedException {
+		for(int i = 0; i < 1000; i++) {
+			trackingSchedule.add(newUser(i));
+		}
+
+		int[] dueInSlice = new int[10];
+		for(int slice = 0; slice < 10; slice++) {
+			clock.set(slice * 100 + 99);
+			while(trackingSchedule.pollDue(0, TimeUnit.MILLISECONDS) != null) {
+				dueInSlice[slice]++;
+			}
+		}
+		for(int due : dueInSlice) {
+			assertTrue(due > 50 && due < 150);
+		}
+		assertEquals(0, trackingSchedule.size());
+	}
+
+	@Test
+	public void lateLookupsDoNotShiftTheSchedule() throws InterruptedException {
+		trackingSchedule.add(newUser(0));
+		clock.set(1000);
+		ScheduledUser scheduledUser = trackingSchedule.pollDue(0, TimeUnit.MILLISECONDS);
+		long firstDueAt = scheduledUser.getDueAt();
+
+		// the lookup finishes 300ms after it was due
+		clock.set(firstDueAt + 300);
+		trackingSchedule.reschedule(scheduledUser, 1);
+
+		assertNull(trackingSchedule.pollDue(0, TimeUnit.MILLISECONDS));
+		clock.set(firstDueAt + 1000);
+		assertEquals(firstDueAt + 1000, trackingSchedule.pollDue(0, TimeUnit.MILLISECONDS).getDueAt());
+	}
+
+	@Test
+	public void stationaryUsersBackOffUpToTheMaximum() throws InterruptedException {
+		trackingSchedule.add(newUser(0));
+		clock.set(1000);
+		ScheduledUser scheduledUser = trackingSchedule.pollDue(0, TimeUnit.MILLISECONDS);
+
+		long[] expectedIntervals = { 2000, 4000, 8000, 8000 };
+		for(long expectedInterval : expectedIntervals) {
+			trackingSchedule.reschedule(scheduledUser, 0);
+			clock.addAndGet(expectedInterval);
+			scheduledUser = trackingSchedule.pollDue(0, TimeUnit.MILLISECONDS);
+			assertEquals(expectedInterval, scheduledUser.getIntervalMillis());
+		}
+
+		// moving again goes straight back to the minimum interval
+		trackingSchedule.reschedule(scheduledUser, 5);
+		clock.addAndGet(1000);
+		assertEquals(1000, trackingSchedule.pollDue(0, TimeUnit.MILLISECONDS).getIntervalMillis());
+	}
+
+	@Test
+	public void unchangedRescheduleKeepsTheInterval() throws InterruptedException {
+		trackingSchedule.add(newUser(0));
+		clock.set(1000);
+		ScheduledUser scheduledUser = trackingSchedule.pollDue(0, TimeUnit.MILLISECONDS);
+		trackingSchedule.reschedule(scheduledUser, 0);
+		clock.addAndGet(2000);
+		scheduledUser = trackingSchedule.pollDue(0, TimeUnit.MILLISECONDS);
+
+		for(int i = 0; i < 3; i++) {
+			trackingSchedule.rescheduleUnchanged(scheduledUser);
+			clock.addAndGet(2000);
+			scheduledUser = trackingSchedule.pollDue(0, TimeUnit.MILLISECONDS);
+			assertEquals(2000, scheduledUser.getIntervalMillis());
+		}
+	}
+
+	@Test
+	public void missedSlotsAreSkippedAndOverdueUsersCounted() throws InterruptedException {
+		for(int i = 0; i < 10; i++) {
+			trackingSchedule.add(newUser(i));
+		}
+		clock.set(5000);
+		assertEquals(10, trackingSchedule.getOverdueCount());
+
+		ScheduledUser scheduledUser = trackingSchedule.pollDue(0, TimeUnit.MILLISECONDS);
+		trackingSchedule.reschedule(scheduledUser, 1);
+
+		assertEquals(9, trackingSchedule.getOverdueCount());
+		assertEquals(10, trackingSchedule.size());
+		// several slots behind, the user moves to its next slot rather than to one already past
+		long nextDueAt = scheduledUser.getDueAt() + 5000;
+		clock.set(nextDueAt);
+		assertEquals(10, trackingSchedule.getOverdueCount());
+	}
+
+	private static User newUser(int i) {
+		return new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com");
+	}
+}
@@ -0,0 +1,148 @@
+package tourGuide;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import tourGuide.execution.ExecutionMode;
+import tourGuide.resilience.CircuitBreaker;
+import tourGuide.resilience.TokenBucket;
+import tourGuide.resilience.UpstreamGuard;
+import tourGuide.resilience.UpstreamUnavailableException;
+import tourGuide.resilience.UpstreamUnavailableException.Reason;
+
+public class TestUpstreamGuard {
+
+	@Test
+	public void bulkheadCapsConcurrentCalls() throws Exception {
+		UpstreamGuard guard = new UpstreamGuard("gpsUtil", ExecutionMode.VIRTUAL, 10, 100_000, 30_000, 30_000);
+		ExecutorService executor = ExecutionMode.VIRTUAL.newExecutor("callers", 0);
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+
+		List<Future<Integer>> calls = new ArrayList<>();
+		for(int i = 0; i < 200; i++) {
+			calls.add(executor.submit(() -> guard.call(() -> {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				try {
+					Thread.sleep(5);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				running.decrementAndGet();
+				return 1;
+			})));
+		}
+		int completed = 0;
+		for(Future<Integer> call : calls) {
+			completed += call.get(30, TimeUnit.SECONDS);
+		}
+		executor.shutdown();
+		guard.shutdown();
+
+		assertEquals(200, completed);
+		assertTrue(maxRunning.get() <= 10);
+		assertEquals(0, guard.getInFlightCount());
+		assertEquals(0, guard.getWaitingCount());
+	}
+
+	@Test
+	public void slowCallTimesOutAndKeepsItsPermitUntilItReturns() throws Exception {
+		UpstreamGuard guard = new UpstreamGuard("tripPricer", ExecutionMode.PLATFORM, 1, 1000, 50, 50);
+
+		assertEquals(Reason.TIMEOUT, reasonOf(() -> guard.call(() -> sleep(10_000))));
+		// the timed out call is interrupted, after which its permit comes back
+		long deadline = System.currentTimeMillis() + 5000;
+		while(guard.getInFlightCount() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals(0, guard.getInFlightCount());
+		assertEquals("ok", guard.call(() -> "ok"));
+		guard.shutdown();
+	}
+
+	@Test
+	public void noRateLimitWhenCallsPerSecondIsZero() {
+		// one call a second would refuse all but the first call within the 1ms wait
+		UpstreamGuard limited = new UpstreamGuard("gpsUtil", ExecutionMode.PLATFORM, 1, 1, 1, 1000);
+		UpstreamGuard unlimited = new UpstreamGuard("gpsUtil", ExecutionMode.PLATFORM, 1, 0, 1, 1000);
+
+		limited.call(() -> "ok");
+		assertEquals(Reason.RATE_LIMITED, reasonOf(() -> limited.call(() -> "ok")));
+		for(int i = 0; i < 100; i++) {
+			assertEquals("ok", unlimited.call(() -> "ok"));
+		}
+		limited.shutdown();
+		unlimited.shutdown();
+	}
+
+	@Test
+	public void circuitOpensOnFailuresAndClosesAfterHalfOpenSuccesses() {
+		AtomicLong clock = new AtomicLong();
+		CircuitBreaker breaker = new CircuitBreaker(10, 4, 0.5, 1000, 2, clock::get);
+		UpstreamGuard guard = new UpstreamGuard("rewardCentral", ExecutionMode.PLATFORM, 5,
+				new TokenBucket(1000, 1000), breaker, 1000, 1000);
+		AtomicInteger calls = new AtomicInteger();
+
+		for(int i = 0; i < 4; i++) {
+			assertEquals(Reason.FAILED, reasonOf(() -> guard.call(() -> {
+				calls.incrementAndGet();
+				throw new IllegalStateException("down");
+			})));
+		}
+		assertEquals(CircuitBreaker.State.OPEN, guard.getCircuitState());
+		assertEquals(Reason.CIRCUIT_OPEN, reasonOf(() -> guard.call(calls::incrementAndGet)));
+		assertEquals(4, calls.get());
+
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+		guard.call(calls::incrementAndGet);
+		assertEquals(CircuitBreaker.State.HALF_OPEN, guard.getCircuitState());
+		guard.call(calls::incrementAndGet);
+		assertEquals(CircuitBreaker.State.CLOSED, guard.getCircuitState());
+		guard.shutdown();
+	}
+
+	@Test
+	public void tokenBucketRefusesWaitsLongerThanTheTimeout() throws InterruptedException {
+		AtomicLong clock = new AtomicLong();
+		TokenBucket bucket = new TokenBucket(10, 2, clock::get);
+
+		assertTrue(bucket.tryAcquire(0, TimeUnit.MILLISECONDS));
+		assertTrue(bucket.tryAcquire(0, TimeUnit.MILLISECONDS));
+		assertFalse(bucket.tryAcquire(50, TimeUnit.MILLISECONDS));
+
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+		assertTrue(bucket.tryAcquire(0, TimeUnit.MILLISECONDS));
+		assertFalse(bucket.tryAcquire(0, TimeUnit.MILLISECONDS));
+	}
+
+	private static Reason reasonOf(Runnable call) {
+		try {
+			call.run();
+		} catch (UpstreamUnavailableException e) {
+			return e.getReason();
+		}
+		fail("Expected the call to be refused");
+		return null;
+	}
+
+	private static String sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return "late";
+	}
+}